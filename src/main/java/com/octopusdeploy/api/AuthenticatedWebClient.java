@@ -1,33 +1,80 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.stream.JsonReader;
 import java.io.*;
 import java.net.*;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import org.apache.commons.lang.StringUtils;
 
 /**
  * An Octopus Deploy web API client that automatically puts the API key in a header
- * Offers GET and POST, returning the response as JSON.
+ * Offers GET and POST, returning the response as JSON, and GET and JSON POST with the response decoded as it is streamed.
+ * Instances are immutable and scoped to a single space; use {@link #forSpace(String)} to address another space.
  */
 public class AuthenticatedWebClient {
     private static final String UTF8 = "UTF-8";
     private static final String GET = "GET";
     private static final String POST = "POST";
     private static final String OCTOPUS_API_KEY_HEADER = "X-Octopus-ApiKey";
+    private static final int MAX_CONDITIONAL_RESPONSES = 64;
     
     private final String hostUrl;
     private final String apiKey;
-    public String spaceId;
+    private final HttpTransport transport;
+    private final String spaceId;
+    private final Map<ConditionalKey, ConditionalResponse> conditionalResponses;
 
     /**
-     * Create a new instance.
+     * Create a new instance using a pooled keep-alive transport with default settings.
      * @param hostUrl URL to the Octopus Deploy host. example: https://octopus.company.com/
      * @param apiKey The Octopus Deploy API key to use in making API requests
      */
     public AuthenticatedWebClient(String hostUrl, String apiKey) {
+        this(hostUrl, apiKey, new PooledHttpTransport());
+    }
+
+    /**
+     * Create a new instance.
+     * @param hostUrl URL to the Octopus Deploy host. example: https://octopus.company.com/
+     * @param apiKey The Octopus Deploy API key to use in making API requests
+     * @param transport The transport used to send requests to the host
+     */
+    public AuthenticatedWebClient(String hostUrl, String apiKey, HttpTransport transport) {
+        this(hostUrl, apiKey, transport, null, Collections.synchronizedMap(
+                new LinkedHashMap<ConditionalKey, ConditionalResponse>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<ConditionalKey, ConditionalResponse> eldest) {
+                        return size() > MAX_CONDITIONAL_RESPONSES;
+                    }
+                }));
+    }
+
+    private AuthenticatedWebClient(String hostUrl, String apiKey, HttpTransport transport, String spaceId,
+                                   Map<ConditionalKey, ConditionalResponse> conditionalResponses) {
         this.hostUrl = hostUrl;
         this.apiKey = apiKey;
+        this.transport = transport;
+        this.spaceId = StringUtils.isNotBlank(spaceId) ? spaceId : null;
+        this.conditionalResponses = conditionalResponses;
+    }
+
+    /**
+     * Returns a client for the given space that shares this client's host, API key and transport.
+     * @param spaceId the space to address, null or blank for the system and default space
+     * @return a client scoped to the space
+     */
+    public AuthenticatedWebClient forSpace(String spaceId) {
+        return new AuthenticatedWebClient(hostUrl, apiKey, transport, spaceId, conditionalResponses);
+    }
+
+    /**
+     * The space this client addresses.
+     * @return the space id, or null for the system and default space
+     */
+    public String getSpaceId() {
+        return spaceId;
     }
 
     /**
@@ -36,26 +83,34 @@ public class AuthenticatedWebClient {
      * @param resource the URL to the resource (omitting the host portion)
      * @param data an encoded data array of the data to post
      * @return JSON blob representing the response from the server.
-     * @throws ProtocolException if the operation is performed on a URL that is not HTTP or HTTPS
      * @throws IOException if there are errors establishing a web connection OR reading the output stream
      * @throws IllegalArgumentException When data to post is null
      */
-    public WebResponse post(String resource, byte[] data) throws ProtocolException, IOException
+    public WebResponse post(String resource, byte[] data) throws IOException
     {
         if (data == null)
         {
             throw new IllegalArgumentException("Data to post can not be null");
         }
-        URLConnection connection = getConnection(POST, resource, null);
-        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");        
-        connection.setRequestProperty("Content-Length", Integer.toString(data.length));
-        connection.setDoOutput(true);
-        connection.connect();
-        DataOutputStream dataOutputStream = new DataOutputStream(connection.getOutputStream());
-        dataOutputStream.write(data);
-        dataOutputStream.flush();
-        dataOutputStream.close();
-        return getResponse(connection);
+        Map<String, String> headers = getHeaders();
+        headers.put("Content-Type", "application/x-www-form-urlencoded");
+        return transport.send(POST, getUri(POST, resource, null), headers, data, AuthenticatedWebClient::readResponse);
+    }
+
+    /**
+     * Executes a post of a JSON document against the resource provided and decodes the JSON response as it is streamed.
+     * @param resource the URL to the resource (omitting the host portion)
+     * @param json the JSON document to post
+     * @param decoder the decoder that reads the response body
+     * @param <T> the decoded type
+     * @return the decoded response
+     * @throws IOException if establishing the web connection fails, or the server returns an error response code
+     */
+    public <T> T postDecoded(String resource, String json, StreamingJson.Decoder<T> decoder) throws IOException {
+        Map<String, String> headers = getHeaders();
+        headers.put("Content-Type", "application/json");
+        return transport.send(POST, getUri(POST, resource, null), headers, json.getBytes(StandardCharsets.UTF_8),
+                (code, responseHeaders, body) -> decodeResponse(code, responseHeaders, body, decoder));
     }
 
     public WebResponse getRoot() throws IOException {
@@ -81,10 +136,128 @@ public class AuthenticatedWebClient {
      */
     public WebResponse get(String resource, Map<String, String> queryParameters) throws IOException {
         String encodedParameterString = mapToQueryParameters(queryParameters);
-        URLConnection connection = getConnection(GET, resource, encodedParameterString);
-        return getResponse(connection);
+        return transport.send(GET, getUri(GET, resource, encodedParameterString), getHeaders(), null, AuthenticatedWebClient::readResponse);
     }
     
+    /**
+     * Executes a get request against the resource provided and decodes the JSON response as it is streamed.
+     * @param resource the URL to the resource (omitting the host portion)
+     * @param decoder the decoder that reads the response body
+     * @param <T> the decoded type
+     * @return the decoded response
+     * @throws IOException if establishing the web connection fails, or the server returns an error response code
+     */
+    public <T> T getDecoded(String resource, StreamingJson.Decoder<T> decoder) throws IOException {
+        return getDecoded(resource, null, decoder);
+    }
+
+    /**
+     * Executes a get request against the resource provided and decodes the JSON response as it is streamed.
+     * @param resource the URL to the resource (omitting the host portion)
+     * @param queryParameters a map of keys and values to include in the get.
+     * @param decoder the decoder that reads the response body
+     * @param <T> the decoded type
+     * @return the decoded response
+     * @throws IOException if establishing the web connection fails, or the server returns an error response code
+     */
+    public <T> T getDecoded(String resource, Map<String, String> queryParameters, StreamingJson.Decoder<T> decoder) throws IOException {
+        String encodedParameterString = mapToQueryParameters(queryParameters);
+        return transport.send(GET, getUri(GET, resource, encodedParameterString), getHeaders(), null,
+                (code, headers, body) -> decodeResponse(code, headers, body, decoder));
+    }
+
+    /**
+     * Executes a get request against a resource that rarely changes, such as projects/all, and decodes the JSON
+     * response as it is streamed. The ETag and decoded value of the response are kept, and later requests send
+     * If-None-Match, so when the resource has not changed the server answers 304 Not Modified and the kept value
+     * is returned without downloading or decoding the resource again. The value is shared and must not be modified.
+     * Values are kept for each resource and type of decoder, so decoders of different types never get each other's,
+     * and only the most recently used are kept.
+     * @param resource the URL to the resource (omitting the host portion)
+     * @param decoder the decoder that reads the response body
+     * @param <T> the decoded type
+     * @return the decoded response
+     * @throws IOException if establishing the web connection fails, or the server returns an error response code
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getDecodedConditional(String resource, StreamingJson.Decoder<T> decoder) throws IOException {
+        URI uri = getUri(GET, resource, null);
+        ConditionalKey key = new ConditionalKey(uri, decoder.getClass());
+        ConditionalResponse kept = conditionalResponses.get(key);
+        Map<String, String> headers = getHeaders();
+        if (kept != null) {
+            headers.put("If-None-Match", kept.etag);
+        }
+        return transport.send(GET, uri, headers, null, (code, responseHeaders, body) -> {
+            if (code == 304 && kept != null) {
+                return (T) kept.value;
+            }
+            T value = decodeResponse(code, responseHeaders, body, decoder);
+            String etag = getHeader(responseHeaders, "ETag");
+            if (etag != null) {
+                conditionalResponses.put(key, new ConditionalResponse(etag, value));
+            } else {
+                conditionalResponses.remove(key);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Checks whether a resource exists, from the status code of a get request.
+     * @param resource the URL to the resource (omitting the host portion)
+     * @return true if the resource exists, false if the server responds 404 Not Found
+     * @throws IOException if establishing the web connection fails, or the server returns any other error response code
+     */
+    public boolean exists(String resource) throws IOException {
+        return transport.send(GET, getUri(GET, resource, null), getHeaders(), null, (code, headers, body) -> {
+            if (code == 404) {
+                return false;
+            }
+            WebResponse response = readResponse(code, headers, body);
+            if (response.isErrorCode()) {
+                throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Executes a get request against a link from an earlier response, such as the "Page.Next" link of a collection,
+     * and decodes the JSON response as it is streamed.
+     * @param link the link, relative to the server root, e.g. /api/Spaces-1/projects?skip=30&amp;take=30
+     * @param decoder the decoder that reads the response body
+     * @param <T> the decoded type
+     * @return the decoded response
+     * @throws IOException if establishing the web connection fails, or the server returns an error response code
+     */
+    public <T> T getDecodedLink(String link, StreamingJson.Decoder<T> decoder) throws IOException {
+        // Resolve from the api segment, so links are right whether or not they include a virtual directory
+        String path = link.startsWith("/") ? link : "/" + link;
+        int api = path.indexOf("/api/");
+        if (api < 0) {
+            throw new IllegalArgumentException(String.format("'%s' is not an API link.", link));
+        }
+        String url = StringUtils.removeEnd(hostUrl, "/") + path.substring(api);
+        URI uri;
+        try {
+            uri = new URL(url).toURI();
+        } catch (URISyntaxException ex) {
+            throw new MalformedURLException(ex.getMessage());
+        }
+        return transport.send(GET, uri, getHeaders(), null,
+                (code, headers, body) -> decodeResponse(code, headers, body, decoder));
+    }
+
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns a string that represents the query parameter component of the URL string.
      * Encodes all values using UTF-8 URL encoding.
@@ -103,25 +276,32 @@ public class AuthenticatedWebClient {
         }
         return StringUtils.join(parameterKeyValuePairs, "&");
     }
+
+    /**
+     * Encodes a value, such as a version that may hold '+' or '/', to be one segment of a resource path.
+     * @param segment the value
+     * @return the value percent-encoded, with spaces as %20 rather than the '+' of a query string
+     */
+    static String encodePathSegment(String segment) {
+        return URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20");
+    }
     
     /**
-     * Creates and returns a new URLConnection object using the given information.
+     * Builds the absolute URI for a resource using the given information.
      * @param method GET or POST
      * @param endpoint the resource endpoint to connect to
      * @param queryParameters query parameters string to use in GET requests
-     * @return the URLConnection (may be HTTP or HTTPS)
+     * @return the URI of the resource
      * @throws MalformedURLException if the supplied url is not a valid url
-     * @throws ProtocolException if the supplied url is not http or https
-     * @throws IOException if there is a failure establishing an http connection
      * @throws IllegalArgumentException if the provided method is not GET or POST
      */
-    private URLConnection getConnection(String method, String endpoint, String queryParameters) 
-        throws MalformedURLException, ProtocolException, IOException, IllegalArgumentException {
+    private URI getUri(String method, String endpoint, String queryParameters)
+        throws MalformedURLException, IllegalArgumentException {
         if (!GET.equals(method) && !POST.equals(method)) {
             throw new IllegalArgumentException(String.format("Unsupported method '%s'.", method));
         }
 
-        String[] urlParts = StringUtils.isNotBlank(spaceId)
+        String[] urlParts = spaceId != null
             ? new String[] {hostUrl, "api", spaceId, endpoint}
             : new String[] {hostUrl, "api", endpoint};
         String joinedUrl = StringUtils.join(urlParts, "/");
@@ -129,40 +309,32 @@ public class AuthenticatedWebClient {
         {
             joinedUrl = StringUtils.join(new String[]{joinedUrl, queryParameters}, "?");
         }
-        URL url = new URL(joinedUrl);
-        URLConnection connection = url.openConnection();
-        if (connection instanceof HttpURLConnection) {
-            ((HttpURLConnection)connection).setRequestMethod(method);
+        try {
+            return new URL(joinedUrl).toURI();
+        } catch (URISyntaxException ex) {
+            throw new MalformedURLException(ex.getMessage());
         }
-        connection.setRequestProperty(OCTOPUS_API_KEY_HEADER, apiKey);
-        return connection;
     }
-    
+
+    /**
+     * Returns the headers sent with every request.
+     * @return a mutable map of header names to values
+     */
+    private Map<String, String> getHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(OCTOPUS_API_KEY_HEADER, apiKey);
+        return headers;
+    }
+
     /**
-     * Use the connection to read a response from the server.
-     * @param connection an instantiated URLConnection object.
+     * Read a response from the server.
+     * @param responseCode the HTTP response code
+     * @param headers the response headers
+     * @param streamToRead the response body
      * @return JSON blob representing the response from the server.
-     * @throws IOException if there is an issue when connecting or reading the response
-     * @throws IllegalArgumentException if the connection is null
+     * @throws IOException if there is an issue reading the response
      */
-    private WebResponse getResponse(URLConnection connection) throws IOException, IllegalArgumentException  {
-        int responseCode = -1;
-        if (connection == null)
-        {
-            throw new IllegalArgumentException("Connection can not be null when getting a response from server.");
-        }
-        connection.connect();
-        InputStream streamToRead = null;
-        if(connection instanceof HttpURLConnection) {
-            responseCode = ((HttpURLConnection)connection).getResponseCode();
-            if (isErrorCode(responseCode))
-            {
-                streamToRead = ((HttpURLConnection)connection).getErrorStream();
-            }
-        }
-        if (streamToRead == null) {
-            streamToRead = connection.getInputStream();
-        }
+    private static WebResponse readResponse(int responseCode, Map<String, List<String>> headers, InputStream streamToRead) throws IOException {
         BufferedReader reader = new BufferedReader(new InputStreamReader(streamToRead, Charset.forName(UTF8)));
         String inputLine;
         StringBuilder response = new StringBuilder();
@@ -170,12 +342,27 @@ public class AuthenticatedWebClient {
         while ((inputLine = reader.readLine()) != null) {
             response.append(inputLine);
         }
-        reader.close();
-        if (connection instanceof HttpURLConnection) {
-            ((HttpURLConnection)connection).disconnect();
-        }
         return new WebResponse(responseCode, response.toString());
     }
+
+    /**
+     * Decode a successful response from the server, or raise the error response.
+     * @param responseCode the HTTP response code
+     * @param headers the response headers
+     * @param streamToRead the response body
+     * @param decoder the decoder that reads the response body
+     * @param <T> the decoded type
+     * @return the decoded response
+     * @throws IOException if there is an issue reading the response, or the response code represents an error
+     */
+    private static <T> T decodeResponse(int responseCode, Map<String, List<String>> headers, InputStream streamToRead, StreamingJson.Decoder<T> decoder) throws IOException {
+        if (isErrorCode(responseCode)) {
+            WebResponse response = readResponse(responseCode, headers, streamToRead);
+            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
+        }
+        JsonReader reader = new JsonReader(new InputStreamReader(streamToRead, StandardCharsets.UTF_8));
+        return decoder.read(reader);
+    }
     
    
     /**
@@ -222,4 +409,47 @@ public class AuthenticatedWebClient {
             this.content = content;
         }   
     }
+
+    /**
+     * The ETag of a response and the value decoded from it.
+     */
+    /**
+     * A resource, with the type of the decoder that read it; a decoder of one type always decodes the same type.
+     */
+    private static final class ConditionalKey {
+        private final URI uri;
+        private final Class<?> decoderType;
+
+        private ConditionalKey(URI uri, Class<?> decoderType) {
+            this.uri = uri;
+            this.decoderType = decoderType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ConditionalKey)) {
+                return false;
+            }
+            ConditionalKey other = (ConditionalKey) o;
+            return uri.equals(other.uri) && decoderType.equals(other.decoderType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uri, decoderType);
+        }
+    }
+
+    private static final class ConditionalResponse {
+        private final String etag;
+        private final Object value;
+
+        private ConditionalResponse(String etag, Object value) {
+            this.etag = etag;
+            this.value = value;
+        }
+    }
 }
@@ -1,14 +1,13 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.stream.JsonReader;
 import com.octopusdeploy.api.data.Channel;
 import java.io.IOException;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
-
 /**
  * Methods for the Channels aspect of the Octopus API
  */
@@ -29,26 +28,16 @@ public class ChannelsApi {
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public Set<Channel> getChannelsByProjectId(String projectId) throws IllegalArgumentException, IOException {
-        TreeSet<Channel> channels = new TreeSet<Channel>(Comparator.comparing(Channel::getName).thenComparing(Channel::getId));
-        AuthenticatedWebClient.WebResponse response = webClient.get("projects/" + projectId + "/channels");
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        for (Object obj : json.getJSONArray("Items")) {
-            JSONObject jsonObj = (JSONObject)obj;
-            String id = jsonObj.getString("Id");
-            String name = jsonObj.getString("Name");
-            String description = jsonObj.getString("Description");
-            boolean isDefault = jsonObj.getBoolean("IsDefault");
-            channels.add(new Channel(id, name, description, projectId, isDefault));
-        }
-        return channels;
+        TreeSet<Channel> channels = newChannelSet();
+        return webClient.getDecoded("projects/" + projectId + "/channels", json -> {
+            StreamingJson.readItems(json, reader -> readChannel(reader, projectId), channels);
+            return channels;
+        });
     }
     
     /**
      * Uses the authenticated web client to pull a channel by name from a given project
-     * from the api and convert them to POJOs
+     * from the api and convert them to POJOs. Only the channels whose names contain the given name are fetched.
      * @param projectId the project to get channels for
      * @param channelName the channel to return
      * @return the named channel for the given project
@@ -56,22 +45,17 @@ public class ChannelsApi {
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public Channel getChannelByName(String projectId, String channelName) throws IllegalArgumentException, IOException {
-        AuthenticatedWebClient.WebResponse response = webClient.get("projects/" + projectId + "/channels");
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        for (Object obj : json.getJSONArray("Items")) {
-            JSONObject jsonObj = (JSONObject)obj;
-            String id = jsonObj.getString("Id");
-            String name = jsonObj.getString("Name");
-            String description = jsonObj.getString("Description");
-            boolean isDefault = jsonObj.getBoolean("IsDefault");
-            if (channelName.equals(name))
-            {
-                return new Channel(id, name, description, projectId, isDefault);
-            }
-        }
-        return null;
+        return NameIndex.findByPartialName(webClient, "projects/" + projectId + "/channels", channelName, false,
+                reader -> readChannel(reader, projectId), Channel::getName);
+    }
+
+    private static TreeSet<Channel> newChannelSet() {
+        return new TreeSet<Channel>(Comparator.comparing(Channel::getName).thenComparing(Channel::getId));
+    }
+
+    private static Channel readChannel(JsonReader json, String projectId) throws IOException {
+        Map<String, String> fields = StreamingJson.readFields(json, "Id", "Name", "Description", "IsDefault");
+        boolean isDefault = Boolean.parseBoolean(fields.get("IsDefault"));
+        return new Channel(fields.get("Id"), fields.get("Name"), fields.get("Description"), projectId, isDefault);
     }
 }
@@ -1,19 +1,20 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import com.octopusdeploy.api.data.*;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class DeploymentsApi {
     private final static String UTF8 = "UTF-8";
+    static final int MAX_DEPLOYMENTS_SEARCHED = 25;
     private final AuthenticatedWebClient webClient;
 
     public DeploymentsApi(AuthenticatedWebClient webClient) {
@@ -31,32 +32,33 @@ public class DeploymentsApi {
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public String getPortalUrlForDeployment(String projectId, String releaseVersion, String environmentId, String tenantId) throws IllegalArgumentException, IOException {
-        //lets only take the first 25, we know it will be a fairly recent deployment
-        String urlFilter = "?take=25" + "&projects=" + projectId + "&environments=" + environmentId;
-
-        if (tenantId != null && !tenantId.isEmpty()) {
-            urlFilter += "&tenants=" + tenantId;
-        }
+        // Deployments are listed newest first, so a recent deployment is found on the first page; a release that
+        // was never deployed must not walk the whole history
+        return new Pages<>(webClient, deploymentsResource(projectId, environmentId, tenantId), MAX_DEPLOYMENTS_SEARCHED,
+                reader -> readWebLinkIfDeployed(reader, releaseVersion), false)
+                .find(link -> link != null, MAX_DEPLOYMENTS_SEARCHED);
+    }
 
-        AuthenticatedWebClient.WebResponse response = webClient.get("deployments" + urlFilter);
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
+    /**
+     * Get the deployments of a project to an environment, newest first, read a page at a time as they are iterated.
+     * @param projectId the id of the project
+     * @param environmentId the id of the environment
+     * @param tenantId the id of the tenant, null for deployments to any tenant
+     * @param pageSize how many deployments to request in each page
+     * @param prefetch whether to request the next page while the current one is being iterated
+     * @return the deployments
+     */
+    public Pages<Deployment> getDeployments(String projectId, String environmentId, String tenantId, int pageSize, boolean prefetch) {
+        return new Pages<>(webClient, deploymentsResource(projectId, environmentId, tenantId), pageSize,
+                DeploymentsApi::readDeployment, prefetch);
+    }
 
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        for (Object obj : json.getJSONArray("Items")) {
-
-            JSONObject jsonObj = (JSONObject)obj;
-            for (Object change : jsonObj.getJSONArray("Changes")) {
-                String version = ((JSONObject)change).getString("Version");
-                if(version.equals(releaseVersion))
-                {
-                    JSONObject links = jsonObj.getJSONObject("Links");
-                    return links.getString("Web");
-                }
-            }
+    private static String deploymentsResource(String projectId, String environmentId, String tenantId) {
+        String resource = "deployments?projects=" + projectId + "&environments=" + environmentId;
+        if (tenantId != null && !tenantId.isEmpty()) {
+            resource += "&tenants=" + tenantId;
         }
-        return null;
+        return resource;
     }
     
     /**
@@ -67,39 +69,7 @@ public class DeploymentsApi {
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public DeploymentProcess getDeploymentProcessForProject(String projectId) throws IllegalArgumentException, IOException {
-        // TODO: refactor/method extract/clean up
-        AuthenticatedWebClient.WebResponse response = webClient.get("deploymentprocesses/deploymentprocess-" + projectId);
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        JSONArray stepsJson = json.getJSONArray("Steps");
-        HashSet<DeploymentProcessStep> deploymentProcessSteps = new HashSet<DeploymentProcessStep>();
-        for (Object stepObj : stepsJson) {
-            JSONObject jsonStepObj = (JSONObject)stepObj;
-            HashSet<DeploymentProcessStepAction> deploymentProcessStepActions = new HashSet<DeploymentProcessStepAction>();
-
-            JSONArray actionsJson = jsonStepObj.getJSONArray("Actions");
-            for (Object actionObj : actionsJson) {
-                JSONObject jsonActionObj = (JSONObject)actionObj;
-                JSONObject propertiesJson = jsonActionObj.getJSONObject("Properties");
-                HashMap<String, String> properties = new HashMap<String, String>();
-                for (Object key : propertiesJson.keySet()) {
-                    String keyString = key.toString();
-                    properties.put(keyString, propertiesJson.getString(keyString));
-                }
-                String dpsaId = jsonActionObj.getString("Id");
-                String dpsaName = jsonActionObj.getString("Name");
-                String dpsaType = jsonActionObj.getString("ActionType");
-                deploymentProcessStepActions.add(new DeploymentProcessStepAction(dpsaId, dpsaName, dpsaType, properties));
-            }
-            String dpsId = jsonStepObj.getString("Id");
-            String dpsName = jsonStepObj.getString("Name");
-            deploymentProcessSteps.add(new DeploymentProcessStep(dpsId, dpsName, deploymentProcessStepActions));
-        }
-        String dpId = json.getString("Id");
-        String dpProject = json.getString("ProjectId");
-        return new DeploymentProcess(dpId, dpProject, deploymentProcessSteps);
+        return webClient.getDecoded("deploymentprocesses/deploymentprocess-" + projectId, DeploymentsApi::readDeploymentProcess);
     }
 
     /**
@@ -110,25 +80,177 @@ public class DeploymentsApi {
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public DeploymentProcessTemplate getDeploymentProcessTemplateForProject(String projectId) throws IllegalArgumentException, IOException {
-        AuthenticatedWebClient.WebResponse response = webClient.get("deploymentprocesses/deploymentprocess-" + projectId + "/template");
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
+        return getDeploymentProcessTemplateForProject(projectId, null);
+    }
+
+    /**
+     * Return the template for creating a release of a project in a channel: the packages to select
+     * versions for and the next release version.
+     * @param projectId project id
+     * @param channelId the id of the channel, or null for the project's default channel
+     * @return DeploymentProcessTemplate deployment process template
+     * @throws IllegalArgumentException when the web client receives a bad parameter
+     * @throws IOException When the AuthenticatedWebClient receives and error response code
+     */
+    public DeploymentProcessTemplate getDeploymentProcessTemplateForProject(String projectId, String channelId) throws IllegalArgumentException, IOException {
+        Map<String, String> query = new HashMap<>();
+        if (StringUtils.isNotBlank(channelId)) {
+            query.put("channel", channelId);
         }
+        return webClient.getDecoded("deploymentprocesses/deploymentprocess-" + projectId + "/template", query,
+                json -> readDeploymentProcessTemplate(json, projectId));
+    }
 
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        Set<SelectedPackage> packages = new HashSet<SelectedPackage>();
-        String deploymentId = json.getString("DeploymentProcessId");
-        JSONArray pkgsJson = json.getJSONArray("Packages");
-        for (Object pkgObj : pkgsJson) {
-            JSONObject pkgJsonObj = (JSONObject) pkgObj;
-            String name = pkgJsonObj.getString("StepName");
-            String packageId = pkgJsonObj.getString("PackageId");
-            String packageReferenceName = pkgJsonObj.getString("PackageReferenceName");
-            String version = pkgJsonObj.getString("VersionSelectedLastRelease");
-            packages.add(new SelectedPackage(name, packageId, packageReferenceName, version));
+    /**
+     * Deploy a release to an environment, and optionally a tenant.
+     * @param releaseId the id of the release to deploy
+     * @param environmentId the id of the environment to deploy to
+     * @param tenantId the id of the tenant to deploy for, or null for an untenanted deployment
+     * @param formValues values for prompted variables, keyed by the id of the prompted variable
+     * @return the queued deployment, including the id of the task that runs it
+     * @throws IllegalArgumentException when the web client receives a bad parameter
+     * @throws IOException When the AuthenticatedWebClient receives and error response code
+     */
+    public Deployment createDeployment(String releaseId, String environmentId, String tenantId, Map<String, String> formValues) throws IllegalArgumentException, IOException {
+        JsonObject deployment = new JsonObject();
+        deployment.addProperty("ReleaseId", releaseId);
+        deployment.addProperty("EnvironmentId", environmentId);
+        if (StringUtils.isNotBlank(tenantId)) {
+            deployment.addProperty("TenantId", tenantId);
         }
+        if (formValues != null && !formValues.isEmpty()) {
+            JsonObject values = new JsonObject();
+            for (Map.Entry<String, String> formValue : formValues.entrySet()) {
+                values.addProperty(formValue.getKey(), formValue.getValue());
+            }
+            deployment.add("FormValues", values);
+        }
+        return webClient.postDecoded("deployments", deployment.toString(), DeploymentsApi::readDeployment);
+    }
+
+    private static String readWebLinkIfDeployed(JsonReader json, String releaseVersion) throws IOException {
+        Set<String> versions = new HashSet<>();
+        String[] webLink = new String[1];
+        StreamingJson.forEachField(json, (name, reader) -> {
+            switch (name) {
+                case "Changes":
+                    StreamingJson.readArray(reader, change -> StreamingJson.readFields(change, "Version").get("Version"), versions);
+                    break;
+                case "Links":
+                    webLink[0] = StreamingJson.readWebLink(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+        return versions.contains(releaseVersion) ? webLink[0] : null;
+    }
+
+    private static DeploymentProcess readDeploymentProcess(JsonReader json) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        HashSet<DeploymentProcessStep> deploymentProcessSteps = new HashSet<DeploymentProcessStep>();
+        StreamingJson.forEachField(json, (name, reader) -> {
+            switch (name) {
+                case "Id":
+                case "ProjectId":
+                    fields.put(name, StreamingJson.readScalar(reader));
+                    break;
+                case "Steps":
+                    StreamingJson.readArray(reader, DeploymentsApi::readDeploymentProcessStep, deploymentProcessSteps);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+        return new DeploymentProcess(fields.get("Id"), fields.get("ProjectId"), deploymentProcessSteps);
+    }
+
+    private static DeploymentProcessStep readDeploymentProcessStep(JsonReader json) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        HashSet<DeploymentProcessStepAction> deploymentProcessStepActions = new HashSet<DeploymentProcessStepAction>();
+        StreamingJson.forEachField(json, (name, reader) -> {
+            switch (name) {
+                case "Id":
+                case "Name":
+                    fields.put(name, StreamingJson.readScalar(reader));
+                    break;
+                case "Actions":
+                    StreamingJson.readArray(reader, DeploymentsApi::readDeploymentProcessStepAction, deploymentProcessStepActions);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+        return new DeploymentProcessStep(fields.get("Id"), fields.get("Name"), deploymentProcessStepActions);
+    }
+
+    private static DeploymentProcessStepAction readDeploymentProcessStepAction(JsonReader json) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        HashMap<String, String> properties = new HashMap<String, String>();
+        StreamingJson.forEachField(json, (name, reader) -> {
+            switch (name) {
+                case "Id":
+                case "Name":
+                case "ActionType":
+                    fields.put(name, StreamingJson.readScalar(reader));
+                    break;
+                case "Properties":
+                    StreamingJson.forEachField(reader, (key, value) -> properties.put(key, StreamingJson.readScalar(value)));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+        return new DeploymentProcessStepAction(fields.get("Id"), fields.get("Name"), fields.get("ActionType"), properties);
+    }
+
+    private static Deployment readDeployment(JsonReader json) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        StreamingJson.forEachField(json, (name, reader) -> {
+            switch (name) {
+                case "Id":
+                case "ReleaseId":
+                case "EnvironmentId":
+                case "TenantId":
+                case "TaskId":
+                    fields.put(name, StreamingJson.readScalar(reader));
+                    break;
+                case "Links":
+                    fields.put(name, StreamingJson.readWebLink(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+        return new Deployment(fields.get("Id"), fields.get("ReleaseId"), fields.get("EnvironmentId"),
+                fields.get("TenantId"), fields.get("TaskId"), fields.get("Links"));
+    }
+
+    private static DeploymentProcessTemplate readDeploymentProcessTemplate(JsonReader json, String projectId) throws IOException {
+        String[] deploymentId = new String[1];
+        String[] nextVersion = new String[1];
+        Set<SelectedPackage> packages = new HashSet<SelectedPackage>();
+        StreamingJson.forEachField(json, (name, reader) -> {
+            switch (name) {
+                case "DeploymentProcessId":
+                    deploymentId[0] = StreamingJson.readScalar(reader);
+                    break;
+                case "NextVersionIncrement":
+                    nextVersion[0] = StreamingJson.readScalar(reader);
+                    break;
+                case "Packages":
+                    StreamingJson.readArray(reader, DeploymentsApi::readSelectedPackage, packages);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+        return new DeploymentProcessTemplate(deploymentId[0], projectId, packages, nextVersion[0]);
+    }
 
-        DeploymentProcessTemplate template = new DeploymentProcessTemplate(deploymentId, projectId, packages);
-        return template;
+    private static SelectedPackage readSelectedPackage(JsonReader json) throws IOException {
+        Map<String, String> fields = StreamingJson.readFields(json, "StepName", "ActionName", "PackageId", "PackageReferenceName", "VersionSelectedLastRelease");
+        String actionName = fields.containsKey("ActionName") ? fields.get("ActionName") : fields.get("StepName");
+        return new SelectedPackage(fields.get("StepName"), actionName, fields.get("PackageId"), fields.get("PackageReferenceName"), fields.get("VersionSelectedLastRelease"));
     }
 }
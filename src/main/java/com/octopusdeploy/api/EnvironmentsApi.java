@@ -1,48 +1,55 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.stream.JsonReader;
 import com.octopusdeploy.api.data.Environment;
 import java.io.IOException;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
-
 public class EnvironmentsApi {
     private final static String UTF8 = "UTF-8";
+    private final static String ALL_ENVIRONMENTS = "environments/all";
     private final AuthenticatedWebClient webClient;
+    private final MetadataCache cache;
 
-    public EnvironmentsApi(AuthenticatedWebClient webClient) {
+    public EnvironmentsApi(AuthenticatedWebClient webClient, MetadataCache cache) {
         this.webClient = webClient;
+        this.cache = cache;
     }
 
     /**
      * Get all environments from the Octopus server as Environment objects.
+     * The result is served from the metadata cache while it is fresh.
      * @return A set of all environments on the Octopus server.
      * @throws IllegalArgumentException when the web client receives a bad parameter
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public Set<Environment> getAllEnvironments() throws IllegalArgumentException, IOException {
-        TreeSet<Environment> environments = new TreeSet<>(Comparator.comparing(Environment::getName).thenComparing(Environment::getId));
-        AuthenticatedWebClient.WebResponse response = webClient.get("environments/all");
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONArray json = (JSONArray)JSONSerializer.toJSON(response.getContent());
-        for (Object obj : json) {
-            JSONObject jsonObj = (JSONObject)obj;
-            String id = jsonObj.getString("Id");
-            String name = jsonObj.getString("Name");
-            String description = jsonObj.getString("Description");
-            environments.add(new Environment(id, name, description));
-        }
-        return environments;
+        NameIndex<Environment> index = cache.get(webClient.getSpaceId(), ALL_ENVIRONMENTS, () -> {
+            TreeSet<Environment> environments = webClient.getDecodedConditional(ALL_ENVIRONMENTS, json -> {
+                TreeSet<Environment> decoded = newEnvironmentSet();
+                StreamingJson.readArray(json, EnvironmentsApi::readEnvironment, decoded);
+                return decoded;
+            });
+            return new NameIndex<>(environments, Environment::getName);
+        });
+        return index.getAll();
+    }
+
+    private static TreeSet<Environment> newEnvironmentSet() {
+        return new TreeSet<>(Comparator.comparing(Environment::getName).thenComparing(Environment::getId));
+    }
+
+    private static Environment readEnvironment(JsonReader json) throws IOException {
+        Map<String, String> fields = StreamingJson.readFields(json, "Id", "Name", "Description");
+        return new Environment(fields.get("Id"), fields.get("Name"), fields.get("Description"));
     }
 
     /**
      * Get the Environment with the given name if it exists, return null otherwise.
+     * Uses the cached environment list when there is one, otherwise asks the API for environments filtered by name.
      * Only selects the environment if the name is an exact match (including case)
      * @param name The name of the Environment to find.
      * @return The Environment with that name.
@@ -55,20 +62,18 @@ public class EnvironmentsApi {
 
     /**
      * Get the Environment with the given name if it exists, return null otherwise.
+     * Uses the cached environment list when there is one, otherwise asks the API for environments filtered by name.
      * @param name The name of the Environment to find.
-     * @param ignoreCase when true uses equalsIgnoreCase in the name check
+     * @param ignoreCase when true falls back to a case-insensitive match if there is no exact match
      * @return The Environment with that name.
      * @throws IllegalArgumentException when the web client receives a bad parameter
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public Environment getEnvironmentByName(String name, boolean ignoreCase) throws IllegalArgumentException, IOException {
-        Set<Environment> environments = getAllEnvironments();
-        for (Environment env : environments) {
-            if ((ignoreCase && name.equalsIgnoreCase(env.getName())) ||
-               (!ignoreCase && name.equals(env.getName()))) {
-                return env;
-            }
+        NameIndex<Environment> index = cache.getIfPresent(webClient.getSpaceId(), ALL_ENVIRONMENTS);
+        if (index == null) {
+            return NameIndex.findByPartialName(webClient, "environments", name, ignoreCase, EnvironmentsApi::readEnvironment, Environment::getName);
         }
-        return null;
+        return index.find(name, ignoreCase);
     }
 }
@@ -0,0 +1,44 @@
+package com.octopusdeploy.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The wire-level transport used by {@link AuthenticatedWebClient} to talk to an Octopus Deploy server.
+ * Implementations own connection management; the web client only builds requests and interprets responses.
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends a request and hands the response to the supplied handler.
+     * The response body stream is only valid for the duration of the handler call
+     * and is closed by the transport once the handler returns.
+     * @param method the HTTP method, GET or POST
+     * @param uri the absolute URI of the resource
+     * @param headers request headers to send (may be empty)
+     * @param body the request body, or null when there is none
+     * @param handler the callback that consumes the response
+     * @param <T> the type produced by the handler
+     * @return the value produced by the handler
+     * @throws IOException if the request cannot be sent or the response cannot be read
+     */
+    <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException;
+
+    /**
+     * Consumes a response from the server.
+     * @param <T> the type produced from the response
+     */
+    interface ResponseHandler<T> {
+        /**
+         * @param code the HTTP response code
+         * @param headers the response headers, keyed case-insensitively
+         * @param body the response body (never null, may be empty)
+         * @return the value produced from the response
+         * @throws IOException if reading the body fails
+         */
+        T handle(int code, Map<String, List<String>> headers, InputStream body) throws IOException;
+    }
+}
@@ -0,0 +1,243 @@
+package com.octopusdeploy.api;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A time-to-live cache for the slow-changing collections of a single Octopus server
+ * (projects, environments, tenants and tag sets), keyed by space and resource.
+ * Entries older than half the TTL are served while a fresh copy is loaded in the background;
+ * entries older than the TTL are reloaded before they are returned.
+ * Once the cache holds more than the configured number of entries the least recently used is evicted.
+ * Concurrent requests for a collection that is not cached share a single load, even when caching is disabled.
+ * A load that was already running when entries were invalidated is returned to its caller but not cached, so
+ * invalidating never leaves values loaded before it in the cache.
+ */
+public class MetadataCache {
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(1);
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    private static final Logger LOGGER = Logger.getLogger(MetadataCache.class.getName());
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Octopus metadata cache refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Executor refreshExecutor;
+    private final Map<Key, Entry> entries;
+    private final SingleFlight loads = new SingleFlight();
+    /** Counts invalidations, so loads that started before one are not cached. */
+    private long generation;
+
+    /**
+     * Create a cache using the default TTL and size.
+     */
+    public MetadataCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Create a new instance that refreshes entries on a shared background pool.
+     * @param ttl how long a loaded collection may be served, zero to disable caching
+     * @param maxEntries the maximum number of collections held before the least recently used is evicted
+     */
+    public MetadataCache(Duration ttl, int maxEntries) {
+        this(ttl, maxEntries, REFRESH_EXECUTOR);
+    }
+
+    /**
+     * Create a new instance.
+     * @param ttl how long a loaded collection may be served, zero to disable caching
+     * @param maxEntries the maximum number of collections held before the least recently used is evicted
+     * @param refreshExecutor the executor background refreshes run on
+     */
+    public MetadataCache(Duration ttl, int maxEntries, Executor refreshExecutor) {
+        if (ttl == null || ttl.isNegative()) {
+            throw new IllegalArgumentException("TTL must not be negative");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum entries must be at least 1");
+        }
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.refreshExecutor = refreshExecutor;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > MetadataCache.this.maxEntries;
+            }
+        };
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Loads a collection.
+     * @param <T> the loaded type
+     */
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    /**
+     * Returns the cached value for a resource in a space, loading it when it is missing or expired.
+     * @param spaceId the space the resource belongs to, null for the default space
+     * @param resource the resource the value was loaded from
+     * @param loader loads the value from the server
+     * @param <T> the cached type
+     * @return the cached or freshly loaded value
+     * @throws IOException if the value has to be loaded and loading fails
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String spaceId, String resource, Loader<T> loader) throws IOException {
+        Key key = new Key(spaceId, resource);
+        if (ttl.isZero()) {
+            return loads.load(key, loader);
+        }
+
+        long now = System.nanoTime();
+        boolean refresh = false;
+        Entry entry;
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+            entry = entries.get(key);
+            if (entry != null && now - entry.loadedNanos < ttl.toNanos()) {
+                if (!entry.refreshing && now - entry.loadedNanos >= ttl.toNanos() / 2) {
+                    entry.refreshing = true;
+                    refresh = true;
+                }
+            } else {
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            return loads.load(key, () -> {
+                T value = loader.load();
+                put(key, value, loadGeneration);
+                return value;
+            });
+        }
+        if (refresh) {
+            refreshInBackground(key, entry, loader, loadGeneration);
+        }
+        return (T) entry.value;
+    }
+
+    /**
+     * Returns the cached value for a resource in a space without loading it.
+     * @param spaceId the space the resource belongs to, null for the default space
+     * @param resource the resource the value was loaded from
+     * @param <T> the cached type
+     * @return the cached value, or null if it is missing or expired
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getIfPresent(String spaceId, String resource) {
+        Entry entry = entries.get(new Key(spaceId, resource));
+        if (entry == null || System.nanoTime() - entry.loadedNanos >= ttl.toNanos()) {
+            return null;
+        }
+        return (T) entry.value;
+    }
+
+    /**
+     * Discards every cached collection so the next request for each is loaded from the server.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        generation++;
+    }
+
+    /**
+     * Discards the cached collections of a single space.
+     * @param spaceId the space to discard, null for the default space
+     */
+    public synchronized void invalidateSpace(String spaceId) {
+        entries.keySet().removeIf(key -> Objects.equals(key.spaceId, spaceId));
+        generation++;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private <T> void refreshInBackground(Key key, Entry stale, Loader<T> loader, long loadGeneration) {
+        refreshExecutor.execute(() -> {
+            try {
+                put(key, loader.load(), loadGeneration);
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Unable to refresh " + key, ex);
+                synchronized (this) {
+                    stale.refreshing = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Cache a loaded value, unless the cache was invalidated after the load started.
+     */
+    private synchronized void put(Key key, Object value, long loadGeneration) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        entries.put(key, new Entry(value, System.nanoTime()));
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long loadedNanos;
+        private boolean refreshing;
+
+        private Entry(Object value, long loadedNanos) {
+            this.value = value;
+            this.loadedNanos = loadedNanos;
+        }
+    }
+
+    private static final class Key {
+        private final String spaceId;
+        private final String resource;
+
+        private Key(String spaceId, String resource) {
+            this.spaceId = spaceId;
+            this.resource = resource;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return Objects.equals(spaceId, other.spaceId) && resource.equals(other.resource);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(spaceId, resource);
+        }
+
+        @Override
+        public String toString() {
+            return spaceId == null ? resource : spaceId + "/" + resource;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.octopusdeploy.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A collection of named resources together with exact and case-folded name lookups,
+ * built once when the collection is fetched so that finding a resource by name does not scan the collection.
+ * Where several resources share a name the first in the collection's iteration order wins.
+ * @param <T> the resource type
+ */
+public class NameIndex<T> {
+    private final Set<T> all;
+    private final Map<String, T> byName;
+    private final Map<String, T> byFoldedName;
+
+    /**
+     * Index a collection.
+     * @param all the resources, in the order ties should be resolved
+     * @param nameOf returns the name of a resource
+     */
+    public NameIndex(Set<T> all, Function<T, String> nameOf) {
+        this.all = Collections.unmodifiableSet(all);
+        this.byName = new HashMap<>();
+        this.byFoldedName = new HashMap<>();
+        for (T item : all) {
+            String name = nameOf.apply(item);
+            if (name != null) {
+                byName.putIfAbsent(name, item);
+                byFoldedName.putIfAbsent(fold(name), item);
+            }
+        }
+    }
+
+    /**
+     * @return every resource in the collection
+     */
+    public Set<T> getAll() {
+        return all;
+    }
+
+    /**
+     * Find a resource by name.
+     * @param name the name to find
+     * @param ignoreCase when true an exact match is preferred, otherwise a match ignoring case is returned
+     * @return the named resource, or null if there is none
+     */
+    public T find(String name, boolean ignoreCase) {
+        T item = byName.get(name);
+        if (item == null && ignoreCase) {
+            item = byFoldedName.get(fold(name));
+        }
+        return item;
+    }
+
+    /**
+     * Find a resource by name among those Octopus returns for a partial name filter, which are every resource whose
+     * name contains the given name, ignoring case. Octopus lists exact matches first, so the results are read a page
+     * at a time and no further pages are requested once an exact match is found.
+     * @param webClient the client to read the pages with
+     * @param resource the collection resource to filter
+     * @param name the name to find
+     * @param ignoreCase when true an exact match is preferred, otherwise a match ignoring case is returned
+     * @param itemDecoder decoder for each resource
+     * @param nameOf returns the name of a resource
+     * @param <T> the resource type
+     * @return the named resource, or null if there is none
+     * @throws IOException if a page cannot be read
+     */
+    static <T> T findByPartialName(AuthenticatedWebClient webClient, String resource, String name, boolean ignoreCase,
+                                   StreamingJson.Decoder<T> itemDecoder, Function<T, String> nameOf) throws IOException {
+        String filtered = resource + "?partialName=" + URLEncoder.encode(name, StandardCharsets.UTF_8);
+        String folded = fold(name);
+        T foldedMatch = null;
+        try {
+            for (T item : new Pages<>(webClient, filtered, Pages.DEFAULT_PAGE_SIZE, itemDecoder, false)) {
+                String itemName = nameOf.apply(item);
+                if (name.equals(itemName)) {
+                    return item;
+                }
+                if (ignoreCase && foldedMatch == null && itemName != null && folded.equals(fold(itemName))) {
+                    foldedMatch = item;
+                }
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return foldedMatch;
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,348 @@
+package com.octopusdeploy.api;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds package deltas in the Octodiff format that the Octopus server applies to a package it already has.
+ * The server describes its copy with a signature: the rolling checksum and SHA-1 hash of each fixed size chunk.
+ * The new file is scanned with a window of the chunk size; where the window matches a chunk of the old package a
+ * copy command is written, and everything in between is written as literal data.
+ */
+final class OctodiffDelta {
+    private static final byte[] SIGNATURE_HEADER = "OCTOSIG".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELTA_HEADER = "OCTODELTA".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_OF_METADATA = ">>>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte VERSION = 0x01;
+    private static final byte COPY_COMMAND = 0x60;
+    private static final byte DATA_COMMAND = (byte) 0x80;
+    private static final String HASH_ALGORITHM = "SHA1";
+    private static final String ROLLING_CHECKSUM_ALGORITHM = "Adler32";
+    private static final int HASH_LENGTH = 20;
+
+    private OctodiffDelta() {
+    }
+
+    /**
+     * A chunk of the package the server has.
+     */
+    static final class Chunk {
+        final long start;
+        final int length;
+        final int rollingChecksum;
+        final byte[] hash;
+
+        Chunk(long start, int length, int rollingChecksum, byte[] hash) {
+            this.start = start;
+            this.length = length;
+            this.rollingChecksum = rollingChecksum;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Read an Octodiff signature.
+     * @param signature the signature bytes
+     * @return the chunks of the file the signature describes
+     * @throws IOException if the signature is not in a format this class can build deltas against
+     */
+    static List<Chunk> readSignature(byte[] signature) throws IOException {
+        LittleEndianReader in = new LittleEndianReader(signature);
+        in.expect(SIGNATURE_HEADER, "an Octodiff signature");
+        if (in.readByte() != VERSION) {
+            throw new IOException("Unsupported Octodiff signature version");
+        }
+        String hashAlgorithm = in.readString();
+        String rollingChecksumAlgorithm = in.readString();
+        if (!HASH_ALGORITHM.equals(hashAlgorithm) || !ROLLING_CHECKSUM_ALGORITHM.equals(rollingChecksumAlgorithm)) {
+            throw new IOException(String.format("Unsupported Octodiff signature algorithms %s and %s", hashAlgorithm, rollingChecksumAlgorithm));
+        }
+        in.expect(END_OF_METADATA, "the end of the signature metadata");
+
+        List<Chunk> chunks = new ArrayList<>();
+        long start = 0;
+        while (in.hasMore()) {
+            int length = in.readUnsignedShort();
+            int rollingChecksum = in.readInt();
+            byte[] hash = in.readBytes(HASH_LENGTH);
+            chunks.add(new Chunk(start, length, rollingChecksum, hash));
+            start += length;
+        }
+        return chunks;
+    }
+
+    /**
+     * Write the delta that turns the file described by a signature into a new file.
+     * @param chunks the chunks of the signature
+     * @param newFile the new file, which must be smaller than 2 GB
+     * @param out where the delta is written
+     * @throws IOException if the new file cannot be read, or the delta cannot be written
+     */
+    static void writeDelta(List<Chunk> chunks, Path newFile, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(newFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Deltas can only be built for packages smaller than 2 GB");
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            LittleEndianWriter delta = new LittleEndianWriter(new BufferedOutputStream(out, 64 * 1024));
+
+            delta.write(DELTA_HEADER);
+            delta.writeByte(VERSION);
+            delta.writeString(HASH_ALGORITHM);
+            byte[] newFileHash = sha1(data, 0, (int) size);
+            delta.writeInt(newFileHash.length);
+            delta.write(newFileHash);
+            delta.write(END_OF_METADATA);
+
+            writeCommands(chunks, data, (int) size, delta);
+            delta.flush();
+        }
+    }
+
+    private static void writeCommands(List<Chunk> chunks, ByteBuffer data, int size, LittleEndianWriter delta) throws IOException {
+        int window = chunks.isEmpty() ? 0 : chunks.get(0).length;
+        Map<Integer, List<Chunk>> byChecksum = new HashMap<>();
+        for (Chunk chunk : chunks) {
+            if (chunk.length == window) {
+                byChecksum.computeIfAbsent(chunk.rollingChecksum, key -> new ArrayList<>()).add(chunk);
+            }
+        }
+
+        int literalStart = 0;
+        long copyStart = -1;
+        long copyLength = 0;
+        int position = 0;
+        int checksum = window > 0 && size >= window ? adler32(data, 0, window) : 0;
+        while (window > 0 && position + window <= size) {
+            Chunk match = null;
+            List<Chunk> candidates = byChecksum.get(checksum);
+            if (candidates != null) {
+                byte[] hash = sha1(data, position, window);
+                for (Chunk candidate : candidates) {
+                    if (Arrays.equals(candidate.hash, hash)) {
+                        match = candidate;
+                        break;
+                    }
+                }
+            }
+            if (match != null) {
+                if (literalStart < position) {
+                    if (copyStart >= 0) {
+                        writeCopy(delta, copyStart, copyLength);
+                        copyStart = -1;
+                    }
+                    writeData(delta, data, literalStart, position - literalStart);
+                }
+                if (copyStart >= 0 && copyStart + copyLength == match.start) {
+                    copyLength += match.length;
+                } else {
+                    if (copyStart >= 0) {
+                        writeCopy(delta, copyStart, copyLength);
+                    }
+                    copyStart = match.start;
+                    copyLength = match.length;
+                }
+                position += window;
+                literalStart = position;
+                if (position + window <= size) {
+                    checksum = adler32(data, position, window);
+                }
+            } else {
+                if (position + window < size) {
+                    checksum = rotate(checksum, data.get(position), data.get(position + window), window);
+                }
+                position++;
+            }
+        }
+        if (copyStart >= 0) {
+            writeCopy(delta, copyStart, copyLength);
+        }
+        if (literalStart < size) {
+            writeData(delta, data, literalStart, size - literalStart);
+        }
+    }
+
+    private static void writeCopy(LittleEndianWriter delta, long start, long length) throws IOException {
+        delta.writeByte(COPY_COMMAND);
+        delta.writeLong(start);
+        delta.writeLong(length);
+    }
+
+    private static void writeData(LittleEndianWriter delta, ByteBuffer data, int start, int length) throws IOException {
+        delta.writeByte(DATA_COMMAND);
+        delta.writeLong(length);
+        byte[] buffer = new byte[Math.min(length, 64 * 1024)];
+        ByteBuffer source = data.duplicate();
+        source.position(start);
+        for (int remaining = length; remaining > 0; ) {
+            int read = Math.min(remaining, buffer.length);
+            source.get(buffer, 0, read);
+            delta.write(buffer, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * The Adler-32 style rolling checksum Octodiff uses, with 16 bit sums that wrap rather than being reduced modulo
+     * a prime.
+     */
+    static int adler32(ByteBuffer data, int offset, int count) {
+        int a = 1;
+        int b = 0;
+        for (int i = offset; i < offset + count; i++) {
+            a = (a + (data.get(i) & 0xff)) & 0xffff;
+            b = (b + a) & 0xffff;
+        }
+        return (b << 16) | a;
+    }
+
+    static int rotate(int checksum, byte remove, byte add, int window) {
+        int b = (checksum >>> 16) & 0xffff;
+        int a = checksum & 0xffff;
+        a = (a - (remove & 0xff) + (add & 0xff)) & 0xffff;
+        b = (b - window * (remove & 0xff) + a - 1) & 0xffff;
+        return (b << 16) | a;
+    }
+
+    private static byte[] sha1(ByteBuffer data, int offset, int length) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        ByteBuffer slice = data.duplicate();
+        slice.position(offset).limit(offset + length);
+        digest.update(slice);
+        return digest.digest();
+    }
+
+    /**
+     * Reads the little endian values and length prefixed strings of the .NET BinaryWriter that Octodiff writes with.
+     */
+    private static final class LittleEndianReader {
+        private final DataInputStream in;
+        private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+        LittleEndianReader(byte[] bytes) {
+            this.in = new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+
+        boolean hasMore() throws IOException {
+            return in.available() > 0;
+        }
+
+        void expect(byte[] expected, String what) throws IOException {
+            if (!Arrays.equals(readBytes(expected.length), expected)) {
+                throw new IOException("Expected " + what);
+            }
+        }
+
+        byte readByte() throws IOException {
+            return in.readByte();
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        int readUnsignedShort() throws IOException {
+            scratch.clear();
+            scratch.put(readBytes(2)).flip();
+            return scratch.getShort() & 0xffff;
+        }
+
+        int readInt() throws IOException {
+            scratch.clear();
+            scratch.put(readBytes(4)).flip();
+            return scratch.getInt();
+        }
+
+        String readString() throws IOException {
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 28) {
+                    throw new EOFException("Invalid string length in the signature");
+                }
+                int next = in.readUnsignedByte();
+                length |= (next & 0x7f) << shift;
+                if ((next & 0x80) == 0) {
+                    break;
+                }
+            }
+            return new String(readBytes(length), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes the little endian values and length prefixed strings of the .NET BinaryWriter.
+     */
+    private static final class LittleEndianWriter {
+        private final OutputStream out;
+        private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+        LittleEndianWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+        }
+
+        void write(byte[] bytes, int length) throws IOException {
+            out.write(bytes, 0, length);
+        }
+
+        void writeByte(byte value) throws IOException {
+            out.write(value);
+        }
+
+        void writeInt(int value) throws IOException {
+            scratch.clear();
+            scratch.putInt(value);
+            out.write(scratch.array(), 0, 4);
+        }
+
+        void writeLong(long value) throws IOException {
+            scratch.clear();
+            scratch.putLong(value);
+            out.write(scratch.array(), 0, 8);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int length = bytes.length;
+            while (length >= 0x80) {
+                out.write((length & 0x7f) | 0x80);
+                length >>>= 7;
+            }
+            out.write(length);
+            out.write(bytes);
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
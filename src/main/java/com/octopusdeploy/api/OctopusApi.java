@@ -1,13 +1,37 @@
 package com.octopusdeploy.api;
 
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
-
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Entry point to the Octopus API for a single server, scoped to one space.
+ * Instances are immutable and safe to share between threads; {@link #forSpace(String)} returns a view of
+ * the same server for another space, and views are cached so each space is only built once.
+ * Any call can be made asynchronously with {@link #async(Call)}, so independent lookups run concurrently.
+ * Once the server is reconfigured, {@link #shutdown()} lets the threads of the replaced instance go.
+ */
 public class OctopusApi {
+    public static final int DEFAULT_ASYNC_THREADS = 8;
+    public static final int ASYNC_QUEUE_CAPACITY = 64;
+
     private final AuthenticatedWebClient webClient;
-    private String spaceId;
+    private final ConcurrentMap<String, OctopusApi> spaceViews;
+    private final ExecutorService asyncExecutor;
+
+    private final MetadataCache metadataCache;
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
 
     private final SpacesApi spacesApi;
     public SpacesApi getSpacesApi() { return spacesApi; }
@@ -55,24 +79,57 @@ public class OctopusApi {
         return tasksApi;
     }
 
+    /**
+     * Returns the view of this server for a space.
+     * @param spaceId the space to address, null or blank for the system and default space
+     * @return the API scoped to the space
+     */
     public OctopusApi forSpace(String spaceId) {
-        this.webClient.spaceId = spaceId;
-        return this;
+        if (spaceId == null || spaceId.trim().isEmpty()) {
+            return forSystem();
+        }
+        return spaceViews.computeIfAbsent(spaceId,
+                id -> new OctopusApi(webClient.forSpace(id), metadataCache, spaceViews, asyncExecutor));
     }
 
+    /**
+     * Returns the view of this server that is not scoped to a space.
+     * @return the API for system level resources and the default space
+     */
     public OctopusApi forSystem() {
-        this.webClient.spaceId = null;
-        return this;
+        return spaceViews.get("");
+    }
+
+    public String getSpaceId() {
+        return webClient.getSpaceId();
     }
 
     public OctopusApi(String octopusHost, String apiKey) {
-        webClient = new AuthenticatedWebClient(octopusHost, apiKey);
+        this(octopusHost, apiKey, new PooledHttpTransport());
+    }
+
+    public OctopusApi(String octopusHost, String apiKey, HttpTransport transport) {
+        this(octopusHost, apiKey, transport, new MetadataCache());
+    }
+
+    public OctopusApi(String octopusHost, String apiKey, HttpTransport transport, MetadataCache metadataCache) {
+        this(new AuthenticatedWebClient(octopusHost, apiKey, transport), metadataCache, new ConcurrentHashMap<>(),
+                newAsyncExecutor(DEFAULT_ASYNC_THREADS));
+        spaceViews.put("", this);
+    }
+
+    private OctopusApi(AuthenticatedWebClient webClient, MetadataCache metadataCache,
+                       ConcurrentMap<String, OctopusApi> spaceViews, ExecutorService asyncExecutor) {
+        this.webClient = webClient;
+        this.metadataCache = metadataCache;
+        this.spaceViews = spaceViews;
+        this.asyncExecutor = asyncExecutor;
         spacesApi = new SpacesApi(webClient);
         channelsApi = new ChannelsApi(webClient);
-        tenantsApi = new TenantsApi(webClient);
-        tagSetsApi = new TagSetsApi(webClient);
-        environmentsApi = new EnvironmentsApi(webClient);
-        projectsApi = new ProjectsApi(webClient);
+        tenantsApi = new TenantsApi(webClient, metadataCache);
+        tagSetsApi = new TagSetsApi(webClient, metadataCache);
+        environmentsApi = new EnvironmentsApi(webClient, metadataCache);
+        projectsApi = new ProjectsApi(webClient, metadataCache);
         deploymentsApi = new DeploymentsApi(webClient);
         releasesApi = new ReleasesApi(webClient);
         variablesApi = new VariablesApi(webClient);
@@ -80,12 +137,88 @@ public class OctopusApi {
     }
 
     public boolean getSupportsSpaces() throws IllegalArgumentException, IOException {
-        AuthenticatedWebClient.WebResponse response = webClient.getRoot();
-        if(response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
+        Map<String, String> links = webClient.getDecoded("",
+                json -> StreamingJson.readField(json, "Links", reader -> StreamingJson.readFields(reader, "Spaces")));
+        return links != null && links.containsKey("Spaces");
+    }
+
+    /**
+     * A call to the API that may be made asynchronously.
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Make a call on this server's bounded pool of threads, which all spaces of the server share.
+     * When the pool's queue is full, or the pool has been shut down, the call is made on the calling thread instead.
+     * For example, {@code api.async(() -> api.getProjectsApi().getProjectByName(name, true))}.
+     * @param call the call to make
+     * @param <T> the result type
+     * @return the result, completed exceptionally with the {@link IOException} if the call fails
+     */
+    public <T> CompletableFuture<T> async(Call<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        asyncExecutor.execute(() -> {
+            try {
+                result.complete(call.call());
+            } catch (Exception | Error ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Wait for the result of an asynchronous call, raising its failure as it was thrown.
+     * @param future the result of {@link #async(Call)}, or of futures composed from it
+     * @param <T> the result type
+     * @return the result
+     * @throws IOException if the call failed
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Octopus server");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
         }
+    }
+
+    /**
+     * Stop the pool of threads for asynchronous calls once the calls already queued have been made, as when the
+     * server's configuration is replaced. Later calls are made on the calling thread.
+     */
+    public void shutdown() {
+        asyncExecutor.shutdown();
+    }
 
-        JSONObject json = (JSONObject) JSONSerializer.toJSON(response.getContent());
-        return ((JSONObject)json.get("Links")).has("Spaces");
+    private static ExecutorService newAsyncExecutor(int threads) {
+        // Unlike CallerRunsPolicy, also run calls made after shutdown, which would otherwise never complete
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ASYNC_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "Octopus API call");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, pool) -> runnable.run());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 }
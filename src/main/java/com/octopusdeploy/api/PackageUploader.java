@@ -0,0 +1,331 @@
+package com.octopusdeploy.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Uploads packages to the built-in package repository of an Octopus server, streaming each file from disk as a
+ * multipart form, so a package is never held in memory however large it is.
+ * Unlike the rest of this API it depends on nothing but the JDK, so it can run on the agent that holds the packages.
+ * Instances are safe to share between threads, which upload over the same pool of connections.
+ * Before uploading, {@link #findPackages(Collection)} tells in one request which packages the server already has,
+ * and {@link #sha1(Path)} whether a local file has the same content, so unchanged packages need not be sent.
+ * {@link #uploadDelta(Path, String, double)} sends only what changed since the latest version in the feed.
+ * {@link #isTransient(IOException)} tells whether a failed upload is worth sending again.
+ */
+public class PackageUploader {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    private static final String OCTOPUS_API_KEY_HEADER = "X-Octopus-ApiKey";
+    private static final Pattern PACKAGE_FILE_NAME = Pattern.compile(
+            "^(.+?)\\.(\\d+(?:\\.\\d+)*(?:[-+].*?)?)\\.(?:tar\\.gz|tar\\.bz2|tar\\.xz|[A-Za-z0-9]+)$");
+
+    private final String hostUrl;
+    private final String apiKey;
+    private final String spaceId;
+    private final HttpClient client;
+
+    /**
+     * Thrown when the server answers an upload with an error status code.
+     */
+    public static class UploadRejectedException extends IOException {
+        private final int statusCode;
+
+        UploadRejectedException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    /**
+     * Create a new instance.
+     * @param hostUrl the URL of the Octopus server
+     * @param apiKey the API key to upload with
+     * @param spaceId the space to upload to, null or blank for the default space
+     */
+    public PackageUploader(String hostUrl, String apiKey, String spaceId) {
+        this(hostUrl, apiKey, spaceId, false);
+    }
+
+    /**
+     * Create a new instance.
+     * @param hostUrl the URL of the Octopus server
+     * @param apiKey the API key to upload with
+     * @param spaceId the space to upload to, null or blank for the default space
+     * @param ignoreSslErrors whether to accept any server certificate, as the CLI does with --ignore-ssl-errors
+     */
+    public PackageUploader(String hostUrl, String apiKey, String spaceId, boolean ignoreSslErrors) {
+        this.hostUrl = hostUrl.endsWith("/") ? hostUrl.substring(0, hostUrl.length() - 1) : hostUrl;
+        this.apiKey = apiKey;
+        this.spaceId = spaceId == null || spaceId.trim().isEmpty() ? null : spaceId.trim();
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (ignoreSslErrors) {
+            builder.sslContext(TrustAllCertificates.sslContext());
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * Upload a package.
+     * @param file the package file, named as Octopus expects, for example MyApp.1.0.0.zip
+     * @param overwriteMode FailIfExists, OverwriteExisting or IgnoreIfExists
+     * @throws IOException if the file cannot be read, or the server does not accept the package
+     */
+    public void upload(Path file, String overwriteMode) throws IOException {
+        post(uploadUri(overwriteMode), file, file.getFileName().toString());
+    }
+
+    /**
+     * Upload a package as a delta against the latest version of it in the built-in feed, when that saves enough.
+     * The server's signature of its latest version is downloaded, the delta is built next to the package, and the
+     * delta is uploaded for the server to rebuild the package from.
+     * @param file the package file, named as Octopus expects, for example MyApp.1.0.0.zip
+     * @param overwriteMode FailIfExists, OverwriteExisting or IgnoreIfExists
+     * @param maxDeltaRatio the largest delta, as a fraction of the package size, worth uploading instead of the package
+     * @return the size of the delta uploaded, or -1 if there was no earlier version or the delta was too large,
+     * in which case the package should be uploaded whole
+     * @throws IOException if the delta cannot be built, or the server does not accept it
+     */
+    public long uploadDelta(Path file, String overwriteMode, double maxDeltaRatio) throws IOException {
+        Matcher name = PACKAGE_FILE_NAME.matcher(file.getFileName().toString());
+        if (!name.matches()) {
+            return -1;
+        }
+        String packageId = name.group(1);
+        String signatureLink = getLatestPackageSignatureLink(packageId);
+        if (signatureLink == null) {
+            return -1;
+        }
+        Map<String, String> signature = getDecoded(URI.create(hostUrl + signatureLink),
+                json -> StreamingJson.readFields(json, "BaseVersion", "Signature"), "downloading the signature of " + packageId);
+        if (signature.get("BaseVersion") == null || signature.get("Signature") == null) {
+            return -1;
+        }
+
+        List<OctodiffDelta.Chunk> chunks = OctodiffDelta.readSignature(Base64.getDecoder().decode(signature.get("Signature")));
+        Path delta = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".octodelta");
+        try {
+            try (OutputStream out = Files.newOutputStream(delta)) {
+                OctodiffDelta.writeDelta(chunks, file, out);
+            }
+            long deltaSize = Files.size(delta);
+            if (deltaSize > Files.size(file) * maxDeltaRatio) {
+                return -1;
+            }
+            post(URI.create(spaceUrl() + "packages/" + AuthenticatedWebClient.encodePathSegment(packageId) + "/"
+                    + AuthenticatedWebClient.encodePathSegment(signature.get("BaseVersion")) + "/delta?overwriteMode="
+                    + URLEncoder.encode(overwriteMode, StandardCharsets.UTF_8)), delta, file.getFileName().toString());
+            return deltaSize;
+        } finally {
+            Files.deleteIfExists(delta);
+        }
+    }
+
+    /**
+     * Returns the signature link of the latest version of a package in the built-in feed, or null if there is none.
+     */
+    private String getLatestPackageSignatureLink(String packageId) throws IOException {
+        URI latest = URI.create(spaceUrl() + "packages?nuGetPackageId=" + URLEncoder.encode(packageId, StandardCharsets.UTF_8) + "&take=1");
+        List<String> links = getDecoded(latest, json -> {
+            List<String> items = new ArrayList<>();
+            StreamingJson.readItems(json, item -> StreamingJson.readField(item, "Links",
+                    reader -> StreamingJson.readFields(reader, "Signature").get("Signature")), items);
+            return items;
+        }, "looking up the latest version of " + packageId);
+        return links.isEmpty() ? null : links.get(0);
+    }
+
+    private void post(URI uri, Path file, String fileName) throws IOException {
+        String boundary = "----OctopusPackage" + UUID.randomUUID().toString().replace("-", "");
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"data\"; filename=\"" + quote(fileName) + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        long length = head.length + Files.size(file) + tail.length;
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header(OCTOPUS_API_KEY_HEADER, apiKey)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofInputStream(() -> multipart(head, file, tail)), length))
+                .build();
+
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8),
+                "uploading " + fileName);
+        if (AuthenticatedWebClient.isErrorCode(response.statusCode())) {
+            throw new UploadRejectedException(response.statusCode(),
+                    String.format("Code %s - %n%s", response.statusCode(), response.body()));
+        }
+    }
+
+    /**
+     * Returns whether an upload that failed may succeed if it is sent again: the connection dropped or timed out, or
+     * the server was overloaded or failed, rather than the package being rejected or unreadable.
+     * @param ex what the upload failed with
+     * @return true if the upload is worth retrying
+     */
+    public static boolean isTransient(IOException ex) {
+        if (Thread.currentThread().isInterrupted() || ex instanceof FileSystemException) {
+            return false;
+        }
+        if (ex instanceof UploadRejectedException) {
+            int statusCode = ((UploadRejectedException) ex).getStatusCode();
+            return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+        }
+        return true;
+    }
+
+    private <T> T getDecoded(URI uri, StreamingJson.Decoder<T> decoder, String what) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header(OCTOPUS_API_KEY_HEADER, apiKey)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream(), what);
+        try (JsonReader json = new JsonReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            if (AuthenticatedWebClient.isErrorCode(response.statusCode())) {
+                throw new IOException(String.format("Code %s %s", response.statusCode(), what));
+            }
+            return decoder.read(json);
+        }
+    }
+
+    /**
+     * Returns the id of the built-in feed package a file would be uploaded as, such as packages-MyApp.1.0.0 for
+     * MyApp.1.0.0.zip.
+     * @param file the package file
+     * @return the package id, or null if the file name is not a package id followed by a version
+     */
+    public static String packageResourceId(Path file) {
+        Matcher matcher = PACKAGE_FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? "packages-" + matcher.group(1) + "." + matcher.group(2) : null;
+    }
+
+    /**
+     * Look up which of some packages are already in the built-in feed, in a single request.
+     * @param packageResourceIds the ids from {@link #packageResourceId(Path)}
+     * @return the SHA-1 hash of each package the feed has, keyed by id; packages the feed lacks are absent
+     * @throws IOException if the server cannot be asked
+     */
+    public Map<String, String> findPackages(Collection<String> packageResourceIds) throws IOException {
+        Map<String, String> hashes = new HashMap<>();
+        if (packageResourceIds.isEmpty()) {
+            return hashes;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String id : packageResourceIds) {
+            query.append(query.length() == 0 ? "?" : "&").append("ids=").append(URLEncoder.encode(id, StandardCharsets.UTF_8));
+        }
+        List<Map<String, String>> packages = getDecoded(URI.create(spaceUrl() + "packages/bulk" + query), json -> {
+            List<Map<String, String>> items = new ArrayList<>();
+            StreamingJson.Decoder<Map<String, String>> decoder = reader -> StreamingJson.readFields(reader, "Id", "Hash");
+            if (json.peek() == JsonToken.BEGIN_ARRAY) {
+                StreamingJson.readArray(json, decoder, items);
+            } else {
+                StreamingJson.readItems(json, decoder, items);
+            }
+            return items;
+        }, "looking up packages");
+        for (Map<String, String> found : packages) {
+            if (found.containsKey("Id")) {
+                hashes.put(found.get("Id"), found.get("Hash"));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Compute the SHA-1 hash of a file, as the built-in feed records it, reading the file once as a stream.
+     * @param file the file
+     * @return the lower case hex digest
+     * @throws IOException if the file cannot be read
+     */
+    public static String sha1(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler, String what) throws IOException {
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while " + what);
+        }
+    }
+
+    private String spaceUrl() {
+        return hostUrl + "/api/" + (spaceId == null ? "" : spaceId + "/");
+    }
+
+    private URI uploadUri(String overwriteMode) {
+        return URI.create(spaceUrl() + "packages/raw?overwriteMode=" + URLEncoder.encode(overwriteMode, StandardCharsets.UTF_8));
+    }
+
+    private static InputStream multipart(byte[] head, Path file, byte[] tail) {
+        try {
+            return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                    new ByteArrayInputStream(head), new FileInputStream(file.toFile()), new ByteArrayInputStream(tail))));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String quote(String fileName) {
+        return fileName.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,178 @@
+package com.octopusdeploy.api;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * The items of a paged Octopus collection resource, read one page at a time by following the "Page.Next" link of
+ * each page. Only the page being read, and the next page when prefetching, are held in memory, and no more pages
+ * are requested once the caller stops iterating.
+ * Iterating throws {@link UncheckedIOException} if a page cannot be read; {@link #find(Predicate)} throws the
+ * underlying {@link IOException}.
+ * @param <T> the item type
+ */
+public final class Pages<T> implements Iterable<T> {
+    public static final int DEFAULT_PAGE_SIZE = 30;
+
+    private static final ExecutorService PREFETCH = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Octopus page prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AuthenticatedWebClient webClient;
+    private final String firstPage;
+    private final StreamingJson.Decoder<T> itemDecoder;
+    private final boolean prefetch;
+
+    /**
+     * @param webClient the client to read the pages with
+     * @param resource the collection resource, which may already have query parameters
+     * @param pageSize how many items to request in each page
+     * @param itemDecoder decoder for each item
+     * @param prefetch whether to request the next page while the current one is being iterated
+     */
+    Pages(AuthenticatedWebClient webClient, String resource, int pageSize, StreamingJson.Decoder<T> itemDecoder, boolean prefetch) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("The page size must be at least 1");
+        }
+        this.webClient = webClient;
+        this.firstPage = resource + (resource.contains("?") ? "&" : "?") + "take=" + pageSize;
+        this.itemDecoder = itemDecoder;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Find the first item that matches, reading no further pages once it is found.
+     * @param predicate the condition the item must meet
+     * @return the first matching item, or null if none match
+     * @throws IOException if a page cannot be read
+     */
+    public T find(Predicate<? super T> predicate) throws IOException {
+        return find(predicate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the first item that matches among the first few items, reading no further pages once it is found or
+     * the limit is reached.
+     * @param predicate the condition the item must meet
+     * @param maxItems how many items to look at, at most
+     * @return the first matching item, or null if none of those looked at match
+     * @throws IOException if a page cannot be read
+     */
+    public T find(Predicate<? super T> predicate, int maxItems) throws IOException {
+        try {
+            Iterator<T> items = iterator();
+            for (int examined = 0; examined < maxItems && items.hasNext(); examined++) {
+                T item = items.next();
+                if (predicate.test(item)) {
+                    return item;
+                }
+            }
+            return null;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PageIterator();
+    }
+
+    private Page<T> read(String link) throws IOException {
+        StreamingJson.Decoder<Page<T>> decoder = json -> readPage(json, itemDecoder);
+        return link == null ? webClient.getDecoded(firstPage, decoder) : webClient.getDecodedLink(link, decoder);
+    }
+
+    private static <T> Page<T> readPage(JsonReader reader, StreamingJson.Decoder<T> itemDecoder) throws IOException {
+        Page<T> page = new Page<>();
+        StreamingJson.forEachField(reader, (name, json) -> {
+            switch (name) {
+                case "Items":
+                    StreamingJson.readArray(json, itemDecoder, page.items);
+                    break;
+                case "Links":
+                    page.next = StreamingJson.readFields(json, "Page.Next").get("Page.Next");
+                    break;
+                default:
+                    json.skipValue();
+            }
+        });
+        return page;
+    }
+
+    private static final class Page<T> {
+        private final List<T> items = new ArrayList<>();
+        private String next;
+    }
+
+    private final class PageIterator implements Iterator<T> {
+        private Iterator<T> items = Collections.emptyIterator();
+        private boolean started;
+        private String nextLink;
+        private CompletableFuture<Page<T>> prefetched;
+
+        @Override
+        public boolean hasNext() {
+            while (!items.hasNext()) {
+                if (started && nextLink == null) {
+                    return false;
+                }
+                items = nextPage().items.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return items.next();
+        }
+
+        private Page<T> nextPage() {
+            Page<T> page = prefetched != null ? join(prefetched) : readUnchecked(nextLink);
+            started = true;
+            prefetched = null;
+            nextLink = page.next;
+            if (prefetch && nextLink != null) {
+                String link = nextLink;
+                prefetched = CompletableFuture.supplyAsync(() -> readUnchecked(link), PREFETCH);
+            }
+            return page;
+        }
+
+        private Page<T> readUnchecked(String link) {
+            try {
+                return read(link);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private Page<T> join(CompletableFuture<Page<T>> page) {
+            try {
+                return page.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+    }
+}
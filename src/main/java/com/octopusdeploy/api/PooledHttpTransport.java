@@ -0,0 +1,219 @@
+package com.octopusdeploy.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A keep-alive transport backed by a single shared {@link HttpClient}.
+ * Connections are reused across requests, so only the first call to a server pays for the TCP and TLS handshake.
+ * The number of concurrent requests (and therefore pooled connections) is capped at the configured pool size,
+ * and the client is recycled once it has been idle for longer than the idle timeout so stale sockets are dropped.
+ * Responses are requested gzip or deflate compressed and are decompressed as they are streamed to the handler,
+ * which sees the decompressed body without the Content-Encoding header.
+ * A transport created to ignore SSL errors accepts any server certificate, as the CLI does with --ignore-ssl-errors.
+ */
+public class PooledHttpTransport implements HttpTransport {
+    public static final int DEFAULT_POOL_SIZE = 10;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final int poolSize;
+    private final Duration idleTimeout;
+    private final boolean http2;
+    private final boolean ignoreSslErrors;
+    private final Semaphore permits;
+
+    private HttpClient client;
+    private long lastUsedNanos;
+
+    /**
+     * Create a transport using the default pool size and idle timeout over HTTP/1.1.
+     */
+    public PooledHttpTransport() {
+        this(DEFAULT_POOL_SIZE, DEFAULT_IDLE_TIMEOUT, false);
+    }
+
+    /**
+     * Create a new instance.
+     * @param poolSize the maximum number of concurrent requests, and so pooled connections, to the server
+     * @param idleTimeout how long the pool may sit unused before its connections are discarded
+     * @param http2 true to negotiate HTTP/2 where the server supports it
+     */
+    public PooledHttpTransport(int poolSize, Duration idleTimeout, boolean http2) {
+        this(poolSize, idleTimeout, http2, false);
+    }
+
+    /**
+     * Create a new instance.
+     * @param poolSize the maximum number of concurrent requests, and so pooled connections, to the server
+     * @param idleTimeout how long the pool may sit unused before its connections are discarded
+     * @param http2 true to negotiate HTTP/2 where the server supports it
+     * @param ignoreSslErrors true to accept any server certificate, for servers with self-signed certificates
+     */
+    public PooledHttpTransport(int poolSize, Duration idleTimeout, boolean http2, boolean ignoreSslErrors) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        if (idleTimeout == null || idleTimeout.isNegative()) {
+            throw new IllegalArgumentException("Idle timeout must not be negative");
+        }
+        this.poolSize = poolSize;
+        this.idleTimeout = idleTimeout;
+        this.http2 = http2;
+        this.ignoreSslErrors = ignoreSslErrors;
+        this.permits = new Semaphore(poolSize, true);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public boolean isIgnoreSslErrors() {
+        return ignoreSslErrors;
+    }
+
+    @Override
+    public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        if (headers.keySet().stream().noneMatch("Accept-Encoding"::equalsIgnoreCase)) {
+            builder.header("Accept-Encoding", ACCEPT_ENCODING);
+        }
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + uri.getHost());
+        }
+        try {
+            HttpResponse<InputStream> response = client().send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            Map<String, List<String>> responseHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            responseHeaders.putAll(response.headers().map());
+            List<String> contentEncoding = responseHeaders.remove("Content-Encoding");
+            // Closing the body returns the connection to the pool
+            try (InputStream responseBody = response.body();
+                 InputStream decodedBody = decode(contentEncoding, responseBody)) {
+                if (decodedBody != responseBody) {
+                    responseHeaders.remove("Content-Length");
+                }
+                return handler.handle(response.statusCode(), responseHeaders, decodedBody);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during request to " + uri);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Wraps a response body so it is decompressed as it is read.
+     * Empty bodies, such as those of 304 Not Modified responses, are returned as they are.
+     * @param contentEncoding the Content-Encoding header values of the response, or null when there are none
+     * @param body the body as received
+     * @return the decompressed body, or the body itself when it is not compressed
+     * @throws IOException if the content encoding is not supported, or the compressed header cannot be read
+     */
+    static InputStream decode(List<String> contentEncoding, InputStream body) throws IOException {
+        String encoding = contentEncoding == null || contentEncoding.isEmpty()
+                ? "identity" : contentEncoding.get(0).trim().toLowerCase(Locale.ROOT);
+        if (encoding.equals("identity") || encoding.isEmpty()) {
+            return body;
+        }
+        PushbackInputStream compressed = new PushbackInputStream(body, 2);
+        int first = compressed.read();
+        if (first == -1) {
+            return compressed;
+        }
+        int second = compressed.read();
+        if (second != -1) {
+            compressed.unread(second);
+        }
+        compressed.unread(first);
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(compressed);
+            case "deflate":
+                // Some servers send raw deflate data rather than the zlib stream the specification calls for
+                boolean zlib = (first & 0x0f) == 8 && second != -1 && ((first << 8) | second) % 31 == 0;
+                return new InflatingInputStream(compressed, new Inflater(!zlib));
+            default:
+                throw new IOException("Unsupported response content encoding " + encoding);
+        }
+    }
+
+    /**
+     * Returns the shared client, replacing it when the pool has been idle for longer than the idle timeout.
+     */
+    private synchronized HttpClient client() {
+        long now = System.nanoTime();
+        if (client == null || now - lastUsedNanos > idleTimeout.toNanos()) {
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(CONNECT_TIMEOUT)
+                    .followRedirects(HttpClient.Redirect.NORMAL);
+            if (ignoreSslErrors) {
+                builder.sslContext(TrustAllCertificates.sslContext());
+            }
+            client = builder.build();
+        }
+        lastUsedNanos = now;
+        return client;
+    }
+
+    /**
+     * An {@link InflaterInputStream} over an inflater of its own, which it ends when it is closed, so the native
+     * memory behind the inflater is freed with the response rather than whenever the inflater is collected.
+     */
+    static final class InflatingInputStream extends InflaterInputStream {
+        private boolean closed;
+
+        InflatingInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
@@ -1,47 +1,54 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.stream.JsonReader;
 import com.octopusdeploy.api.data.Project;
 import java.io.IOException;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
-
 public class ProjectsApi {
+    private final static String ALL_PROJECTS = "projects/all";
     private final AuthenticatedWebClient webClient;
+    private final MetadataCache cache;
 
-    public ProjectsApi(AuthenticatedWebClient webClient) {
+    public ProjectsApi(AuthenticatedWebClient webClient, MetadataCache cache) {
         this.webClient = webClient;
+        this.cache = cache;
     }
 
     /**
      * Uses the authenticated web client to pull all projects from the api and
-     * convert them to POJOs
+     * convert them to POJOs. The result is served from the metadata cache while it is fresh.
      * @return a Set of Projects (may be empty)
      * @throws IllegalArgumentException when the web client receives a bad parameter
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public Set<Project> getAllProjects() throws IllegalArgumentException, IOException {
-        TreeSet<Project> projects = new TreeSet<>(Comparator.comparing(Project::getName).thenComparing(Project::getId));
-        AuthenticatedWebClient.WebResponse response = webClient.get("projects/all");
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONArray json = (JSONArray)JSONSerializer.toJSON(response.getContent());
-        for (Object obj : json) {
-            JSONObject jsonObj = (JSONObject)obj;
-            String id = jsonObj.getString("Id");
-            String name = jsonObj.getString("Name");
-            projects.add(new Project(id, name));
-        }
-        return projects;
+        NameIndex<Project> index = cache.get(webClient.getSpaceId(), ALL_PROJECTS, () -> {
+            TreeSet<Project> projects = webClient.getDecodedConditional(ALL_PROJECTS, json -> {
+                TreeSet<Project> decoded = newProjectSet();
+                StreamingJson.readArray(json, ProjectsApi::readProject, decoded);
+                return decoded;
+            });
+            return new NameIndex<>(projects, Project::getName);
+        });
+        return index.getAll();
+    }
+
+    private static TreeSet<Project> newProjectSet() {
+        return new TreeSet<>(Comparator.comparing(Project::getName).thenComparing(Project::getId));
+    }
+
+    private static Project readProject(JsonReader json) throws IOException {
+        Map<String, String> fields = StreamingJson.readFields(json, "Id", "Name");
+        return new Project(fields.get("Id"), fields.get("Name"));
     }
 
     /**
-     * Loads in the full list of projects from the API, then selects one project by name.
+     * Selects one project by name, from the cached project list when there is one,
+     * otherwise from the projects the API returns when filtered by name.
      * Only selects the project if the name is an exact match (including case)
      * @param name name of the project to select
      * @return the named project or null if no such project exists
@@ -53,21 +60,19 @@ public class ProjectsApi {
     }
 
     /**
-     * Loads in the full list of projects from the API, then selects one project by name.
+     * Selects one project by name, from the cached project list when there is one,
+     * otherwise from the projects the API returns when filtered by name.
      * @param name name of the project to select
-     * @param ignoreCase when true uses equalsIgnoreCase in the name check
+     * @param ignoreCase when true falls back to a case-insensitive match if there is no exact match
      * @return the named project or null if no such project exists
      * @throws IllegalArgumentException when the web client receives a bad parameter
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public Project getProjectByName(String name, boolean ignoreCase)  throws IllegalArgumentException, IOException {
-        Set<Project> allProjects = getAllProjects();
-        for (Project project : allProjects) {
-            if ((ignoreCase && name.equalsIgnoreCase(project.getName())) ||
-               (!ignoreCase && name.equals(project.getName()))) {
-                return project;
-            }
+        NameIndex<Project> index = cache.getIfPresent(webClient.getSpaceId(), ALL_PROJECTS);
+        if (index == null) {
+            return NameIndex.findByPartialName(webClient, "projects", name, ignoreCase, ProjectsApi::readProject, Project::getName);
         }
-        return null;
+        return index.find(name, ignoreCase);
     }
 }
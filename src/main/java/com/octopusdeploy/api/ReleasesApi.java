@@ -1,27 +1,70 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import com.octopusdeploy.api.data.Release;
 import com.octopusdeploy.api.data.SelectedPackage;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
-import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 public class ReleasesApi {
     private final static String UTF8 = "UTF-8";
+    public static final Duration MISSING_RELEASE_TTL = Duration.ofSeconds(10);
+    private static final int MAX_MISSING_RELEASES = 256;
+
     private final AuthenticatedWebClient webClient;
+    private final Map<String, Long> missingReleases = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_MISSING_RELEASES;
+        }
+    };
 
     public ReleasesApi(AuthenticatedWebClient webClient) {
         this.webClient = webClient;
     }
 
+    /**
+     * Check whether a project has a release with the given version, with a single request for that release.
+     * Versions found to be missing are remembered for {@link #MISSING_RELEASE_TTL}, so validating a form field
+     * as it is typed does not ask the server again for every keystroke.
+     * @param projectId the id of the project
+     * @param releaseVersion the version of the release
+     * @return true if the release exists
+     * @throws IllegalArgumentException when the web client receives a bad parameter
+     * @throws IOException When the AuthenticatedWebClient receives an error response code other than 404
+     */
+    public boolean releaseExists(String projectId, String releaseVersion) throws IllegalArgumentException, IOException {
+        String key = projectId + "/" + releaseVersion;
+        synchronized (missingReleases) {
+            Long expiry = missingReleases.get(key);
+            if (expiry != null) {
+                if (expiry - System.nanoTime() > 0) {
+                    return false;
+                }
+                missingReleases.remove(key);
+            }
+        }
+        boolean exists = webClient.exists(releasePath(projectId, releaseVersion));
+        if (!exists) {
+            synchronized (missingReleases) {
+                missingReleases.put(key, System.nanoTime() + MISSING_RELEASE_TTL.toNanos());
+            }
+        }
+        return exists;
+    }
+
     /**
      * Get all releases for a given project from the Octopus server;
+     * every page is read, so prefer {@link #getReleases(String, int, boolean)} when looking for a release.
      * @param projectId the id of the project to get the releases for
      * @return A set of all releases for a given project
      * @throws IllegalArgumentException when the web client receives a bad parameter
@@ -29,22 +72,28 @@ public class ReleasesApi {
      */
     public Set<Release> getReleasesForProject(String projectId) throws IllegalArgumentException, IOException {
         HashSet<Release> releases = new HashSet<Release>();
-        AuthenticatedWebClient.WebResponse response = webClient.get("projects/" + projectId + "/releases");
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        for (Object obj : json.getJSONArray("Items")) {
-            JSONObject jsonObj = (JSONObject)obj;
-            String id = jsonObj.getString("Id");
-            String version = jsonObj.getString("Version");
-            String channelId = jsonObj.getString("ChannelId");
-            String ReleaseNotes = jsonObj.getString("ReleaseNotes");
-            releases.add(new Release(id, projectId, channelId, ReleaseNotes, version));
+        try {
+            for (Release release : getReleases(projectId, Pages.DEFAULT_PAGE_SIZE, true)) {
+                releases.add(release);
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
         }
         return releases;
     }
 
+    /**
+     * Get the releases of a project, newest first, read a page at a time as they are iterated.
+     * @param projectId the id of the project to get the releases for
+     * @param pageSize how many releases to request in each page
+     * @param prefetch whether to request the next page while the current one is being iterated
+     * @return the releases of the project
+     */
+    public Pages<Release> getReleases(String projectId, int pageSize, boolean prefetch) {
+        return new Pages<>(webClient, "projects/" + projectId + "/releases", pageSize,
+                reader -> readRelease(reader, projectId), prefetch);
+    }
+
     /**
      * Get the partial Octopus portal URL for a given release version of a project;
      * @param projectId the id of the project to get the releases for
@@ -54,13 +103,18 @@ public class ReleasesApi {
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public String getPortalUrlForRelease(String projectId, String releaseVersion) throws IllegalArgumentException, IOException {
-        AuthenticatedWebClient.WebResponse response = webClient.get("projects/" + projectId + "/releases/" + releaseVersion);
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        JSONObject links = json.getJSONObject("Links");
-        return links.getString("Web");
+        return webClient.getDecoded(releasePath(projectId, releaseVersion), ReleasesApi::readWebLink);
+    }
+
+    /**
+     * Get the partial Octopus portal URL for a release, straight from its id
+     * @param releaseId the id of the release
+     * @return the partial portal URL of the release
+     * @throws IllegalArgumentException when the web client receives a bad parameter
+     * @throws IOException When the AuthenticatedWebClient receives and error response code
+     */
+    public String getPortalUrlForReleaseId(String releaseId) throws IllegalArgumentException, IOException {
+        return webClient.getDecoded("releases/" + releaseId, ReleasesApi::readWebLink);
     }
 
     /**
@@ -71,19 +125,69 @@ public class ReleasesApi {
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public String getPortalUrlForLatestRelease(String projectId) throws IllegalArgumentException, IOException {
-        AuthenticatedWebClient.WebResponse response = webClient.get("projects/" + projectId + "/releases");
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
+        return new Pages<>(webClient, "projects/" + projectId + "/releases", 1, ReleasesApi::readWebLink, false)
+                .find(link -> true);
+    }
+
+    /**
+     * Get a release of a project by its version.
+     * @param projectId the id of the project the release belongs to
+     * @param releaseVersion the version of the release to get
+     * @return the release
+     * @throws IllegalArgumentException when the web client receives a bad parameter
+     * @throws IOException When the AuthenticatedWebClient receives and error response code, including when there is no such release
+     */
+    public Release getRelease(String projectId, String releaseVersion) throws IllegalArgumentException, IOException {
+        return webClient.getDecoded(releasePath(projectId, releaseVersion), json -> readRelease(json, projectId));
+    }
+
+    /**
+     * Create a release of a project.
+     * @param projectId the id of the project to create the release for
+     * @param channelId the id of the channel to create the release in
+     * @param releaseVersion the version of the release
+     * @param releaseNotes the release notes, may be null
+     * @param packages the package version selected for each package step, may be empty
+     * @return the created release
+     * @throws IllegalArgumentException when the web client receives a bad parameter
+     * @throws IOException When the AuthenticatedWebClient receives and error response code
+     */
+    public Release createRelease(String projectId, String channelId, String releaseVersion, String releaseNotes, Collection<SelectedPackage> packages) throws IllegalArgumentException, IOException {
+        JsonObject release = new JsonObject();
+        release.addProperty("ProjectId", projectId);
+        release.addProperty("ChannelId", channelId);
+        release.addProperty("Version", releaseVersion);
+        if (releaseNotes != null) {
+            release.addProperty("ReleaseNotes", releaseNotes);
+        }
+        JsonArray selectedPackages = new JsonArray();
+        for (SelectedPackage selectedPackage : packages) {
+            JsonObject selected = new JsonObject();
+            selected.addProperty("ActionName", selectedPackage.getActionName());
+            if (selectedPackage.getPackageReferenceName() != null) {
+                selected.addProperty("PackageReferenceName", selectedPackage.getPackageReferenceName());
+            }
+            selected.addProperty("Version", selectedPackage.getVersion());
+            selectedPackages.add(selected);
         }
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        JSONArray items = json.getJSONArray("Items");
-        if (items.size() != 0) {
-            return items
-                    .getJSONObject(0)
-                    .getJSONObject("Links")
-                    .getString("Web");
+        release.add("SelectedPackages", selectedPackages);
+        Release created = webClient.postDecoded("releases", release.toString(), json -> readRelease(json, projectId));
+        synchronized (missingReleases) {
+            missingReleases.remove(projectId + "/" + created.getVersion());
         }
+        return created;
+    }
+
+    private static String releasePath(String projectId, String releaseVersion) {
+        return "projects/" + projectId + "/releases/" + AuthenticatedWebClient.encodePathSegment(releaseVersion);
+    }
+
+    private static Release readRelease(JsonReader json, String projectId) throws IOException {
+        Map<String, String> fields = StreamingJson.readFields(json, "Id", "Version", "ChannelId", "ReleaseNotes");
+        return new Release(fields.get("Id"), projectId, fields.get("ChannelId"), fields.get("ReleaseNotes"), fields.get("Version"));
+    }
 
-        return null;
+    private static String readWebLink(JsonReader json) throws IOException {
+        return StreamingJson.readField(json, "Links", StreamingJson::readWebLink);
     }
 }
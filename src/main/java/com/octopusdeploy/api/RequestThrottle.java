@@ -0,0 +1,133 @@
+package com.octopusdeploy.api;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how fast, and how many at once, requests are made of one Octopus server, so that several Jenkins
+ * controllers sharing a server slow down rather than overload it.
+ * <p>
+ * The rate is a token bucket: up to one second's worth of requests may start at once, and after that requests
+ * start at the configured rate, each waiting its turn. Separately, no more than the configured number of
+ * requests may be in flight at once; a request holds its place from {@link #acquire()} until the permit is closed.
+ * Work that runs for much longer than a request, such as a CLI command, only waits its turn at the rate with
+ * {@link #awaitTurn()}, as holding a place for its whole run would leave none for the requests.
+ * A limit of 0 turns that limit off.
+ */
+public class RequestThrottle {
+    /** A throttle that never waits. */
+    public static final RequestThrottle UNLIMITED = new RequestThrottle(0, 0);
+
+    /**
+     * A place among the requests in flight, given up when closed.
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Waits for a request's turn; replaced in tests.
+     */
+    interface Sleeper {
+        void sleepNanos(long nanos) throws InterruptedException;
+    }
+
+    private static final Permit NO_PERMIT = () -> { };
+
+    private final double requestsPerSecond;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final LongSupplier nanoClock;
+    private final Sleeper sleeper;
+
+    private double tokens;
+    private long refilledAtNanos;
+
+    /**
+     * Create a new instance.
+     * @param requestsPerSecond how many requests may start each second, 0 for no limit
+     * @param maxInFlight how many requests may be in flight at once, 0 for no limit
+     */
+    public RequestThrottle(double requestsPerSecond, int maxInFlight) {
+        this(requestsPerSecond, maxInFlight, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    RequestThrottle(double requestsPerSecond, int maxInFlight, LongSupplier nanoClock, Sleeper sleeper) {
+        if (requestsPerSecond < 0) {
+            throw new IllegalArgumentException("Requests per second must not be negative");
+        }
+        if (maxInFlight < 0) {
+            throw new IllegalArgumentException("Max in-flight requests must not be negative");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+        this.tokens = burst();
+        this.refilledAtNanos = nanoClock.getAsLong();
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Wait until a request may start.
+     * @return the permit to close once the request has finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Permit acquire() throws InterruptedException {
+        if (inFlight != null) {
+            inFlight.acquire();
+        }
+        try {
+            long wait = reserve();
+            if (wait > 0) {
+                sleeper.sleepNanos(wait);
+            }
+        } catch (InterruptedException | RuntimeException ex) {
+            if (inFlight != null) {
+                inFlight.release();
+            }
+            throw ex;
+        }
+        return inFlight == null ? NO_PERMIT : inFlight::release;
+    }
+
+    /**
+     * Wait until the rate allows something to start, without taking a place among the requests in flight.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitTurn() throws InterruptedException {
+        long wait = reserve();
+        if (wait > 0) {
+            sleeper.sleepNanos(wait);
+        }
+    }
+
+    /**
+     * Take a token, borrowing against future refills when the bucket is empty.
+     * @return how long the caller must wait for the token it took, in nanoseconds
+     */
+    private synchronized long reserve() {
+        if (requestsPerSecond == 0) {
+            return 0;
+        }
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(burst(), tokens + (now - refilledAtNanos) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        refilledAtNanos = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / requestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private double burst() {
+        return Math.max(1, requestsPerSecond);
+    }
+}
@@ -0,0 +1,295 @@
+package com.octopusdeploy.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * A transport that retries failed requests and stops sending requests to a server that keeps failing.
+ * <p>
+ * GET requests that fail to connect, or are answered with 502, 503 or 504, are retried after an exponential
+ * backoff with full jitter. Requests of any method answered with 429 Too Many Requests are retried too, since the
+ * server did not act on them. A Retry-After header on the response is honoured in place of the backoff, unless it
+ * asks for a longer wait than the maximum delay, in which case the response is returned as it is.
+ * <p>
+ * Every failed attempt counts towards a circuit breaker. Once the failure threshold is reached without a success in
+ * between, the circuit opens and requests fail at once with {@link CircuitOpenException} for the open duration.
+ * After that one trial request is let through: the circuit closes if it succeeds, and opens again if it fails.
+ */
+public class ResilientHttpTransport implements HttpTransport {
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(500);
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(30);
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+    private static final String GET = "GET";
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The state of the circuit breaker.
+     */
+    public enum CircuitState {
+        /** Requests are sent as normal. */
+        CLOSED,
+        /** The server keeps failing, so requests fail at once without being sent. */
+        OPEN,
+        /** The open duration has passed and a trial request is deciding whether the circuit closes again. */
+        HALF_OPEN
+    }
+
+    /**
+     * Thrown instead of sending a request while the circuit is open.
+     */
+    public static class CircuitOpenException extends IOException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Waits between attempts; replaced in tests.
+     */
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final HttpTransport delegate;
+    private final int maxRetries;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final LongSupplier nanoClock;
+    private final Sleeper sleeper;
+
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+
+    /**
+     * Create a transport using the default retry and circuit breaker settings.
+     * @param delegate the transport that sends the requests
+     */
+    public ResilientHttpTransport(HttpTransport delegate) {
+        this(delegate, DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    /**
+     * Create a new instance.
+     * @param delegate the transport that sends the requests
+     * @param maxRetries how many times a request is retried after the first attempt, 0 to never retry
+     * @param baseDelay the backoff before the first retry, doubled for each retry after it
+     * @param maxDelay the longest wait between attempts
+     * @param failureThreshold the consecutive failures that open the circuit, 0 to never open it
+     * @param openDuration how long the circuit stays open before a trial request is let through
+     */
+    public ResilientHttpTransport(HttpTransport delegate, int maxRetries, Duration baseDelay, Duration maxDelay,
+                                  int failureThreshold, Duration openDuration) {
+        this(delegate, maxRetries, baseDelay, maxDelay, failureThreshold, openDuration, System::nanoTime, Thread::sleep);
+    }
+
+    ResilientHttpTransport(HttpTransport delegate, int maxRetries, Duration baseDelay, Duration maxDelay,
+                           int failureThreshold, Duration openDuration, LongSupplier nanoClock, Sleeper sleeper) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Max retries must not be negative");
+        }
+        if (failureThreshold < 0) {
+            throw new IllegalArgumentException("Failure threshold must not be negative");
+        }
+        this.delegate = delegate;
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+    }
+
+    public HttpTransport getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the current state of the circuit breaker.
+     * @return closed, open, or half open
+     */
+    public synchronized CircuitState getCircuitState() {
+        if (state == CircuitState.OPEN && nanoClock.getAsLong() - openedAtNanos >= openDuration.toNanos()) {
+            return CircuitState.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the number of failed attempts since the last success.
+     * @return the consecutive failures
+     */
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Close the circuit and forget past failures, so requests are sent again straight away.
+     */
+    public synchronized void resetCircuit() {
+        state = CircuitState.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    @Override
+    public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            boolean trial = acquire(uri);
+            Attempt<T> result = new Attempt<>();
+            boolean lastAttempt = attempt >= maxRetries;
+            try {
+                result.value = delegate.send(method, uri, headers, body, (code, responseHeaders, responseBody) -> {
+                    result.responded = true;
+                    result.failed = code == TOO_MANY_REQUESTS || (code >= 500 && code != 501 && code != 505);
+                    if (result.failed && !lastAttempt && isRetryable(method, code)) {
+                        result.retryAfter = retryAfter(responseHeaders);
+                        if (result.retryAfter == null || result.retryAfter.compareTo(maxDelay) <= 0) {
+                            result.retry = true;
+                            return null;
+                        }
+                    }
+                    return handler.handle(code, responseHeaders, responseBody);
+                });
+            } catch (InterruptedIOException ex) {
+                release(trial, false, false);
+                throw ex;
+            } catch (IOException ex) {
+                if (result.responded) {
+                    // The handler raised this from a response that was received, so it says nothing about the server
+                    release(trial, true, result.failed);
+                    throw ex;
+                }
+                release(trial, true, true);
+                if (lastAttempt || !GET.equals(method)) {
+                    throw ex;
+                }
+                pause(backoff(attempt), uri);
+                continue;
+            } catch (RuntimeException | Error ex) {
+                release(trial, result.responded, result.failed);
+                throw ex;
+            }
+            release(trial, true, result.failed);
+            if (!result.retry) {
+                return result.value;
+            }
+            pause(result.retryAfter != null ? result.retryAfter : backoff(attempt), uri);
+        }
+    }
+
+    private static boolean isRetryable(String method, int code) {
+        return code == TOO_MANY_REQUESTS || (GET.equals(method) && (code == 502 || code == 503 || code == 504));
+    }
+
+    /**
+     * Wait for permission to send a request.
+     * @return true if the request is the trial request of a half open circuit
+     */
+    private synchronized boolean acquire(URI uri) throws CircuitOpenException {
+        if (state == CircuitState.CLOSED) {
+            return false;
+        }
+        long openForNanos = openDuration.toNanos() - (nanoClock.getAsLong() - openedAtNanos);
+        if (state == CircuitState.OPEN && openForNanos > 0 || trialInFlight) {
+            throw new CircuitOpenException(String.format(
+                    "Not sending the request to %s because the server has failed %d times in a row; "
+                            + "requests are paused for %d more seconds",
+                    uri.getHost(), consecutiveFailures, Math.max(0, Duration.ofNanos(openForNanos).getSeconds())));
+        }
+        state = CircuitState.HALF_OPEN;
+        trialInFlight = true;
+        return true;
+    }
+
+    /**
+     * Record the outcome of an attempt.
+     * @param trial whether the attempt was the trial request of a half open circuit
+     * @param counted whether the attempt reached a verdict about the health of the server
+     * @param failed whether the server failed the attempt
+     */
+    private synchronized void release(boolean trial, boolean counted, boolean failed) {
+        if (trial) {
+            trialInFlight = false;
+        }
+        if (!counted) {
+            if (trial) {
+                state = CircuitState.OPEN;
+            }
+            return;
+        }
+        if (!failed) {
+            state = CircuitState.CLOSED;
+            consecutiveFailures = 0;
+            return;
+        }
+        consecutiveFailures++;
+        if (failureThreshold > 0 && (trial || consecutiveFailures >= failureThreshold)) {
+            state = CircuitState.OPEN;
+            openedAtNanos = nanoClock.getAsLong();
+        }
+    }
+
+    /**
+     * Returns the exponential backoff for a retry, with full jitter so clients retrying together spread out.
+     */
+    private Duration backoff(int attempt) {
+        long ceiling = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private void pause(Duration delay, URI uri) throws InterruptedIOException {
+        try {
+            sleeper.sleep(delay.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry a request to " + uri);
+        }
+    }
+
+    /**
+     * Read the Retry-After header, given either as seconds or as an HTTP date.
+     * @return the wait the server asked for, or null when it gave none
+     */
+    static Duration retryAfter(Map<String, List<String>> headers) {
+        List<String> values = headers.get("Retry-After");
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        String value = values.get(0).trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException ex) {
+            try {
+                Duration wait = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+                return wait.isNegative() ? Duration.ZERO : wait;
+            } catch (DateTimeParseException unparseable) {
+                return null;
+            }
+        }
+    }
+
+    private static final class Attempt<T> {
+        private T value;
+        private boolean responded;
+        private boolean failed;
+        private boolean retry;
+        private Duration retryAfter;
+    }
+}
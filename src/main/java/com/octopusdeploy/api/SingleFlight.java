@@ -0,0 +1,62 @@
+package com.octopusdeploy.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Lets concurrent callers asking for the same thing share one load: the first caller loads it, and callers that
+ * arrive while that load is in flight wait for it and receive the same result, or the same failure.
+ * Nothing is kept once the load completes; caching is up to the caller.
+ */
+final class SingleFlight {
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Load a value, or wait for the load already in flight for the same key.
+     * @param key identifies what is loaded
+     * @param loader loads the value
+     * @param <T> the loaded type
+     * @return the loaded value
+     * @throws IOException if loading fails, for every caller sharing the load
+     */
+    @SuppressWarnings("unchecked")
+    <T> T load(Object key, MetadataCache.Loader<T> loader) throws IOException {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+        try {
+            T value = loader.load();
+            mine.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> load) throws IOException {
+        try {
+            return load.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request already in flight");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+}
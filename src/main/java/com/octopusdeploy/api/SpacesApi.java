@@ -1,12 +1,12 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.stream.JsonReader;
 import com.octopusdeploy.api.data.Space;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -18,18 +18,15 @@ public class SpacesApi {
     }
 
     public Set<Space> getAllSpaces() throws IllegalArgumentException, IOException {
-        TreeSet<Space> spaces = new TreeSet<>(Comparator.comparing(Space::getName).thenComparing(Space::getId));
-        AuthenticatedWebClient.WebResponse response = webClient.get("spaces/all");
-        if(response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %s%n", response.getCode(), response.getContent()));
-        }
-        JSONArray json = (JSONArray)JSONSerializer.toJSON(response.getContent());
-        for(Object obj : json) {
-            JSONObject jsonObj = (JSONObject)obj;
-            String id = jsonObj.getString("Id");
-            String name = jsonObj.getString("Name");
-            spaces.add(new Space(id, name));
-        }
-        return spaces;
+        return Collections.unmodifiableSet(webClient.getDecodedConditional("spaces/all", json -> {
+            TreeSet<Space> spaces = new TreeSet<>(Comparator.comparing(Space::getName).thenComparing(Space::getId));
+            StreamingJson.readArray(json, SpacesApi::readSpace, spaces);
+            return spaces;
+        }));
+    }
+
+    private static Space readSpace(JsonReader json) throws IOException {
+        Map<String, String> fields = StreamingJson.readFields(json, "Id", "Name");
+        return new Space(fields.get("Id"), fields.get("Name"));
     }
 }
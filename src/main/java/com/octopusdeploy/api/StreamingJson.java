@@ -0,0 +1,171 @@
+package com.octopusdeploy.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for decoding API responses straight from the response stream.
+ * Only the fields a caller asks for are materialized; everything else is skipped as it is read.
+ */
+public final class StreamingJson {
+
+    private StreamingJson() {
+    }
+
+    /**
+     * Decodes a value from the current position of a JSON stream.
+     * @param <T> the decoded type
+     */
+    public interface Decoder<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Receives each field of a JSON object in turn. Implementations must consume the field value,
+     * calling {@link JsonReader#skipValue()} for fields they are not interested in.
+     */
+    public interface FieldHandler {
+        void field(String name, JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Reads a JSON object, handing each field to the handler.
+     * @param reader the JSON stream, positioned at the start of an object
+     * @param handler the handler for each field
+     * @throws IOException if the stream cannot be read or is not an object
+     */
+    public static void forEachField(JsonReader reader, FieldHandler handler) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            handler.field(reader.nextName(), reader);
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads the named scalar fields of a JSON object as strings, skipping every other field.
+     * Numbers and booleans are returned in their literal form; missing, null and non-scalar fields are absent.
+     * @param reader the JSON stream, positioned at the start of an object
+     * @param names the fields to read
+     * @return a map of field name to value
+     * @throws IOException if the stream cannot be read or is not an object
+     */
+    public static Map<String, String> readFields(JsonReader reader, String... names) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        forEachField(reader, (name, json) -> {
+            if (contains(names, name)) {
+                String value = readScalar(json);
+                if (value != null) {
+                    fields.put(name, value);
+                }
+            } else {
+                json.skipValue();
+            }
+        });
+        return fields;
+    }
+
+    /**
+     * Reads a scalar value as a string.
+     * @param reader the JSON stream, positioned at a value
+     * @return the value, or null if it is null or not a scalar (in which case it is skipped)
+     * @throws IOException if the stream cannot be read
+     */
+    public static String readScalar(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Reads every element of a JSON array.
+     * @param reader the JSON stream, positioned at the start of an array
+     * @param elementDecoder decoder for each element
+     * @param into the collection the decoded elements are added to
+     * @param <T> the element type
+     * @throws IOException if the stream cannot be read or is not an array
+     */
+    public static <T> void readArray(JsonReader reader, Decoder<T> elementDecoder, Collection<? super T> into) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            into.add(elementDecoder.read(reader));
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads the "Items" array of a paged Octopus collection resource, skipping the paging metadata.
+     * @param reader the JSON stream, positioned at the start of a collection object
+     * @param elementDecoder decoder for each item
+     * @param into the collection the decoded items are added to
+     * @param <T> the item type
+     * @throws IOException if the stream cannot be read or is not a collection object
+     */
+    public static <T> void readItems(JsonReader reader, Decoder<T> elementDecoder, Collection<? super T> into) throws IOException {
+        forEachField(reader, (name, json) -> {
+            if ("Items".equals(name)) {
+                readArray(json, elementDecoder, into);
+            } else {
+                json.skipValue();
+            }
+        });
+    }
+
+    /**
+     * Decodes a single field of a JSON object, skipping every other field.
+     * @param reader the JSON stream, positioned at the start of an object
+     * @param name the field to decode
+     * @param fieldDecoder decoder for the field value
+     * @param <T> the decoded type
+     * @return the decoded field, or null if the object has no such field
+     * @throws IOException if the stream cannot be read or is not an object
+     */
+    public static <T> T readField(JsonReader reader, String name, Decoder<T> fieldDecoder) throws IOException {
+        List<T> value = new ArrayList<>(1);
+        forEachField(reader, (field, json) -> {
+            if (name.equals(field)) {
+                value.add(fieldDecoder.read(json));
+            } else {
+                json.skipValue();
+            }
+        });
+        return value.isEmpty() ? null : value.get(0);
+    }
+
+    /**
+     * Reads the "Web" link from an Octopus "Links" object.
+     * @param reader the JSON stream, positioned at the start of a Links object
+     * @return the web link, or null if there is none
+     * @throws IOException if the stream cannot be read
+     */
+    public static String readWebLink(JsonReader reader) throws IOException {
+        return readFields(reader, "Web").get("Web");
+    }
+
+    private static boolean contains(String[] names, String name) {
+        for (String candidate : names) {
+            if (candidate.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,47 +1,61 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.stream.JsonReader;
 import com.octopusdeploy.api.data.Tag;
 import com.octopusdeploy.api.data.TagSet;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 public class TagSetsApi {
     private final AuthenticatedWebClient webClient;
+    private final MetadataCache cache;
 
-    public TagSetsApi(AuthenticatedWebClient webClient) { this.webClient = webClient; }
+    public TagSetsApi(AuthenticatedWebClient webClient, MetadataCache cache) {
+        this.webClient = webClient;
+        this.cache = cache;
+    }
 
     public Set<TagSet> getAll() throws IllegalArgumentException, IOException {
-        TreeSet<TagSet> tagSets = new TreeSet<>(Comparator.comparing(TagSet::getSortOrder).thenComparing(TagSet::getName).thenComparing(TagSet::getId));
-        AuthenticatedWebClient.WebResponse response = webClient.get("tagsets/all");
-        if(response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONArray json = (JSONArray) JSONSerializer.toJSON(response.getContent());
-        for(Object obj : json) {
-            JSONObject jsonObj = (JSONObject)obj;
-            String id = jsonObj.getString("Id");
-            String name = jsonObj.getString("Name");
-            String description = jsonObj.getString("Description");
-            int sortOrder = jsonObj.getInt("SortOrder");
-            JSONArray tagsJson = (JSONArray)JSONSerializer.toJSON(jsonObj.getString("Tags"));
-            Set<Tag> tags = new TreeSet<>(Comparator.comparing(Tag::getSortOrder).thenComparing(Tag::getName).thenComparing(Tag::getId));
-            for(Object tagObj : tagsJson) {
-                JSONObject tagJsonObj = (JSONObject)tagObj;
-                String tagId = tagJsonObj.getString("Id");
-                String tagName = tagJsonObj.getString("Name");
-                String tagCanonicalName = tagJsonObj.getString("CanonicalTagName");
-                int tagSortOrder = tagJsonObj.getInt("SortOrder");
-                tags.add(new Tag(tagId, tagName, tagCanonicalName, tagSortOrder));
+        return Collections.unmodifiableSet(cache.get(webClient.getSpaceId(), "tagsets/all", () -> {
+            return webClient.getDecodedConditional("tagsets/all", json -> {
+                TreeSet<TagSet> tagSets = new TreeSet<>(Comparator.comparing(TagSet::getSortOrder).thenComparing(TagSet::getName).thenComparing(TagSet::getId));
+                StreamingJson.readArray(json, TagSetsApi::readTagSet, tagSets);
+                return tagSets;
+            });
+        }));
+    }
+
+    private static TagSet readTagSet(JsonReader json) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        Set<Tag> tags = new TreeSet<>(Comparator.comparing(Tag::getSortOrder).thenComparing(Tag::getName).thenComparing(Tag::getId));
+        StreamingJson.forEachField(json, (name, reader) -> {
+            switch (name) {
+                case "Id":
+                case "Name":
+                case "Description":
+                case "SortOrder":
+                    fields.put(name, StreamingJson.readScalar(reader));
+                    break;
+                case "Tags":
+                    StreamingJson.readArray(reader, TagSetsApi::readTag, tags);
+                    break;
+                default:
+                    reader.skipValue();
             }
-            tagSets.add(new TagSet(id, name, description, sortOrder, tags));
-        }
+        });
+        int sortOrder = Integer.parseInt(fields.get("SortOrder"));
+        return new TagSet(fields.get("Id"), fields.get("Name"), fields.get("Description"), sortOrder, tags);
+    }
 
-        return tagSets;
+    private static Tag readTag(JsonReader json) throws IOException {
+        Map<String, String> fields = StreamingJson.readFields(json, "Id", "Name", "CanonicalTagName", "SortOrder");
+        int sortOrder = Integer.parseInt(fields.get("SortOrder"));
+        return new Tag(fields.get("Id"), fields.get("Name"), fields.get("CanonicalTagName"), sortOrder);
     }
 }
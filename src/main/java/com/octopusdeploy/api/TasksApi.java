@@ -2,8 +2,7 @@ package com.octopusdeploy.api;
 
 import com.octopusdeploy.api.data.Task;
 import java.io.IOException;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
+import java.util.Map;
 
 public class TasksApi {
     private final AuthenticatedWebClient webClient;
@@ -20,16 +19,34 @@ public class TasksApi {
      * @throws IOException  When the AuthenticatedWebClient receives and error response code
      */
     public Task getTask(String taskId) throws IllegalArgumentException, IOException {
-        AuthenticatedWebClient.WebResponse response = webClient.get("tasks/" + taskId);
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        String id = json.getString("Id");
-        String name = json.getString("Name");
-        String description = json.getString("Description");
-        String state = json.getString("State");
-        boolean isCompleted = json.getBoolean("IsCompleted");
-        return new Task(id, name, description, state, isCompleted);
+        Map<String, String> fields = webClient.getDecoded("tasks/" + taskId,
+                json -> StreamingJson.readFields(json, "Id", "Name", "Description", "State", "IsCompleted"));
+        boolean isCompleted = Boolean.parseBoolean(fields.get("IsCompleted"));
+        return new Task(fields.get("Id"), fields.get("Name"), fields.get("Description"), fields.get("State"), isCompleted);
+    }
+
+    /**
+     * Get the partial Octopus portal URL for a task, such as the task running a deployment.
+     * @param taskId task id
+     * @return the partial portal URL of the task
+     * @throws IllegalArgumentException  when the web client receives a bad parameter
+     * @throws IOException  When the AuthenticatedWebClient receives and error response code
+     */
+    public String getPortalUrlForTask(String taskId) throws IllegalArgumentException, IOException {
+        return webClient.getDecoded("tasks/" + taskId,
+                json -> StreamingJson.readField(json, "Links", StreamingJson::readWebLink));
+    }
+
+    /**
+     * Requests cancellation of a task. The task may take a while to stop after the request is accepted.
+     * @param taskId task id
+     * @throws IllegalArgumentException  when the web client receives a bad parameter
+     * @throws IOException  When the AuthenticatedWebClient receives and error response code
+     */
+    public void cancelTask(String taskId) throws IllegalArgumentException, IOException {
+        webClient.postDecoded("tasks/" + taskId + "/cancel", "{}", json -> {
+            json.skipValue();
+            return null;
+        });
     }
 }
@@ -1,50 +1,57 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.stream.JsonReader;
 import com.octopusdeploy.api.data.Tenant;
 import java.io.IOException;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
-
 /**
  * Methods for the Tenants aspects of the Octopus API
  */
 public class TenantsApi {
+    private final static String ALL_TENANTS = "tenants/all";
     private final AuthenticatedWebClient webClient;
+    private final MetadataCache cache;
 
-    public TenantsApi(AuthenticatedWebClient webClient) {
+    public TenantsApi(AuthenticatedWebClient webClient, MetadataCache cache) {
         this.webClient = webClient;
+        this.cache = cache;
     }
 
     /**
      * Uses the authenticated web client to pull all tenants from the api and
-     * convert them to POJOs
+     * convert them to POJOs. The result is served from the metadata cache while it is fresh.
      * @return a Set of Tenants (may be empty)
      * @throws IllegalArgumentException when the web client receives a bad parameter
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public Set<Tenant> getAllTenants() throws IllegalArgumentException, IOException {
-        TreeSet<Tenant> tenants = new TreeSet<>(Comparator.comparing(Tenant::getName).thenComparing(Tenant::getId));
-        AuthenticatedWebClient.WebResponse response = webClient.get("tenants/all");
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONArray json = (JSONArray)JSONSerializer.toJSON(response.getContent());
-        for (Object obj : json) {
-            JSONObject jsonObj = (JSONObject)obj;
-            String id = jsonObj.getString("Id");
-            String name = jsonObj.getString("Name");
-            tenants.add(new Tenant(id, name));
-        }
-        return tenants;
+        NameIndex<Tenant> index = cache.get(webClient.getSpaceId(), ALL_TENANTS, () -> {
+            TreeSet<Tenant> tenants = webClient.getDecodedConditional(ALL_TENANTS, json -> {
+                TreeSet<Tenant> decoded = newTenantSet();
+                StreamingJson.readArray(json, TenantsApi::readTenant, decoded);
+                return decoded;
+            });
+            return new NameIndex<>(tenants, Tenant::getName);
+        });
+        return index.getAll();
+    }
+
+    private static TreeSet<Tenant> newTenantSet() {
+        return new TreeSet<>(Comparator.comparing(Tenant::getName).thenComparing(Tenant::getId));
+    }
+
+    private static Tenant readTenant(JsonReader json) throws IOException {
+        Map<String, String> fields = StreamingJson.readFields(json, "Id", "Name");
+        return new Tenant(fields.get("Id"), fields.get("Name"));
     }
 
     /**
      * Get the Tenant with the given name if it exists, return null otherwise.
+     * Uses the cached tenant list when there is one, otherwise asks the API for tenants filtered by name.
      * Only selects the tenant if the name is an exact match (including case)
      * @param name The name of the Tenant to find.
      * @return The Tenant with that name.
@@ -57,20 +64,18 @@ public class TenantsApi {
 
     /**
      * Get the Tenant with the given name if it exists, return null otherwise.
+     * Uses the cached tenant list when there is one, otherwise asks the API for tenants filtered by name.
      * @param name The name of the Tenant to find.
-     * @param ignoreCase when true uses equalsIgnoreCase in the name check
+     * @param ignoreCase when true falls back to a case-insensitive match if there is no exact match
      * @return The Environment with that name.
      * @throws IllegalArgumentException when the web client receives a bad parameter
      * @throws IOException When the AuthenticatedWebClient receives and error response code
      */
     public Tenant getTenantByName(String name, boolean ignoreCase) throws IllegalArgumentException, IOException {
-        Set<Tenant> tenants = getAllTenants();
-        for (Tenant tenant : tenants) {
-            if ((ignoreCase && name.equalsIgnoreCase(tenant.getName())) ||
-               (!ignoreCase && name.equals(tenant.getName()))) {
-                return tenant;
-            }
+        NameIndex<Tenant> index = cache.getIfPresent(webClient.getSpaceId(), ALL_TENANTS);
+        if (index == null) {
+            return NameIndex.findByPartialName(webClient, "tenants", name, ignoreCase, TenantsApi::readTenant, Tenant::getName);
         }
-        return null;
+        return index.find(name, ignoreCase);
     }
 }
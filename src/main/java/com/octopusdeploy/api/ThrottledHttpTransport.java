@@ -0,0 +1,43 @@
+package com.octopusdeploy.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A transport that waits for its {@link RequestThrottle} before each request is sent,
+ * and holds the throttle's permit until the response has been handled.
+ */
+public class ThrottledHttpTransport implements HttpTransport {
+    private final HttpTransport delegate;
+    private final RequestThrottle throttle;
+
+    /**
+     * Create a new instance.
+     * @param delegate the transport that sends the requests
+     * @param throttle the limits to send the requests within, usually shared with the other clients of the server
+     */
+    public ThrottledHttpTransport(HttpTransport delegate, RequestThrottle throttle) {
+        this.delegate = delegate;
+        this.throttle = throttle;
+    }
+
+    public RequestThrottle getThrottle() {
+        return throttle;
+    }
+
+    @Override
+    public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+        RequestThrottle.Permit permit;
+        try {
+            permit = throttle.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send a request to " + uri.getHost());
+        }
+        try (RequestThrottle.Permit ignored = permit) {
+            return delegate.send(method, uri, headers, body, handler);
+        }
+    }
+}
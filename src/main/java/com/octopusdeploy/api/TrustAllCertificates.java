@@ -0,0 +1,66 @@
+package com.octopusdeploy.api;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+
+/**
+ * The TLS settings for a server configured to ignore SSL errors, the equivalent of the CLI's --ignore-ssl-errors:
+ * any certificate is accepted, whoever issued it and whatever host it names.
+ * Being an {@link X509ExtendedTrustManager}, the trust manager also takes over the host name check, which
+ * {@link java.net.http.HttpClient} otherwise makes whatever the trust manager decides.
+ */
+final class TrustAllCertificates extends X509ExtendedTrustManager {
+    private static final X509Certificate[] NO_ISSUERS = new X509Certificate[0];
+
+    private TrustAllCertificates() {
+    }
+
+    /**
+     * Returns a new TLS context that trusts every server certificate.
+     * @return the context
+     */
+    static SSLContext sslContext() {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[] {new TrustAllCertificates()}, new SecureRandom());
+            return context;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Could not create a TLS context that ignores SSL errors", ex);
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType) {
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType) {
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return NO_ISSUERS;
+    }
+}
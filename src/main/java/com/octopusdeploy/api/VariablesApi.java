@@ -1,12 +1,16 @@
 package com.octopusdeploy.api;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.octopusdeploy.api.data.Variable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
 import org.apache.commons.lang.StringUtils;
 
 public class VariablesApi {
@@ -28,29 +32,60 @@ public class VariablesApi {
     public Set<Variable> getVariablesByReleaseAndEnvironment(String releaseId, String environmentId, Properties entryProperties) throws IllegalArgumentException, IOException {
         Set<Variable> variables = new HashSet<Variable>();
 
-        AuthenticatedWebClient.WebResponse response = webClient.get("releases/" + releaseId + "/deployments/preview/" + environmentId);
-        if (response.isErrorCode()) {
-            throw new IOException(String.format("Code %s - %n%s", response.getCode(), response.getContent()));
-        }
-        JSONObject json = (JSONObject)JSONSerializer.toJSON(response.getContent());
-        JSONObject form = json.getJSONObject("Form");
-        if (form != null){
-            JSONObject formValues = form.getJSONObject("Values");
-            for (Object obj : form.getJSONArray("Elements")) {
-                JSONObject jsonObj = (JSONObject) obj;
-                String id = jsonObj.getString("Name");
-                String name = jsonObj.getJSONObject("Control").getString("Name");
-                String value = formValues.getString(id);
-
-                String entryValue = entryProperties.getProperty(name);
-                if (StringUtils.isNotEmpty(entryValue)) {
-                    value = entryValue;
-                }
-                String description = jsonObj.getJSONObject("Control").getString("Description");
-                variables.add(new Variable(id, name, value, description));
+        Map<String, String> formValues = new HashMap<>();
+        List<Map<String, String>> elements = new ArrayList<>();
+        webClient.getDecoded("releases/" + releaseId + "/deployments/preview/" + environmentId, json ->
+                StreamingJson.readField(json, "Form", form -> {
+                    if (form.peek() == JsonToken.NULL) {
+                        form.nextNull();
+                        return null;
+                    }
+                    StreamingJson.forEachField(form, (name, reader) -> {
+                        switch (name) {
+                            case "Values":
+                                StreamingJson.forEachField(reader, (key, value) -> formValues.put(key, StreamingJson.readScalar(value)));
+                                break;
+                            case "Elements":
+                                StreamingJson.readArray(reader, VariablesApi::readElement, elements);
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    });
+                    return null;
+                }));
+        for (Map<String, String> element : elements) {
+            String id = element.get("Name");
+            String name = element.get("ControlName");
+            String value = formValues.get(id);
+
+            String entryValue = entryProperties.getProperty(name);
+            if (StringUtils.isNotEmpty(entryValue)) {
+                value = entryValue;
             }
+            String description = element.get("ControlDescription");
+            variables.add(new Variable(id, name, value, description));
         }
 
         return variables;
     }
+
+    private static Map<String, String> readElement(JsonReader json) throws IOException {
+        Map<String, String> element = new HashMap<>();
+        StreamingJson.forEachField(json, (name, reader) -> {
+            switch (name) {
+                case "Name":
+                    element.put(name, StreamingJson.readScalar(reader));
+                    break;
+                case "Control":
+                    Map<String, String> control = StreamingJson.readFields(reader, "Name", "Description");
+                    element.put("ControlName", control.get("Name"));
+                    element.put("ControlDescription", control.get("Description"));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+        return element;
+    }
 }
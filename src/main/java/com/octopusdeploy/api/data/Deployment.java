@@ -0,0 +1,50 @@
+package com.octopusdeploy.api.data;
+
+/**
+ * A simplified representation of a Deployment in OctopusDeploy.
+ */
+public class Deployment {
+    private final String id;
+    public String getId() {
+        return id;
+    }
+
+    private final String releaseId;
+    public String getReleaseId() {
+        return releaseId;
+    }
+
+    private final String environmentId;
+    public String getEnvironmentId() {
+        return environmentId;
+    }
+
+    private final String tenantId;
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    private final String taskId;
+    public String getTaskId() {
+        return taskId;
+    }
+
+    private final String webLink;
+    public String getWebLink() {
+        return webLink;
+    }
+
+    public Deployment(String id, String releaseId, String environmentId, String tenantId, String taskId, String webLink) {
+        this.id = id;
+        this.releaseId = releaseId;
+        this.environmentId = environmentId;
+        this.tenantId = tenantId;
+        this.taskId = taskId;
+        this.webLink = webLink;
+    }
+
+    @Override
+    public String toString() {
+        return "Deployment [id=" + id + ", releaseId=" + releaseId + ", environmentId=" + environmentId + ", tenantId=" + tenantId + ", taskId=" + taskId + ", webLink=" + webLink + "]";
+    }
+}
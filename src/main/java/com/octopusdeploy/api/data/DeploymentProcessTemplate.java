@@ -21,14 +21,24 @@ public class DeploymentProcessTemplate {
         return packages;
     }
     
+    private final String nextVersionIncrement;
+    public String getNextVersionIncrement() {
+        return nextVersionIncrement;
+    }
+
     public DeploymentProcessTemplate(String id, String projectId, Set<SelectedPackage> packages) {
+        this(id, projectId, packages, null);
+    }
+
+    public DeploymentProcessTemplate(String id, String projectId, Set<SelectedPackage> packages, String nextVersionIncrement) {
         this.id = id;
         this.projectId = projectId;
         this.packages = packages;
+        this.nextVersionIncrement = nextVersionIncrement;
     }
 
     @Override
     public String toString() {
-        return "DeploymentProcessTemplate [id=" + id + ", projectId=" + projectId + ", packages=" + packages + "]";
+        return "DeploymentProcessTemplate [id=" + id + ", projectId=" + projectId + ", packages=" + packages + ", nextVersionIncrement=" + nextVersionIncrement + "]";
     }
 }
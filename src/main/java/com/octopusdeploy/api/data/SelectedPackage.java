@@ -20,8 +20,16 @@ public class SelectedPackage {
     private final String version;
     public String getVersion() { return version; }
 
+    private final String actionName;
+    public String getActionName() { return actionName; }
+
     public SelectedPackage(String stepName, String packageId, String packageReferenceName, String version) {
+        this(stepName, stepName, packageId, packageReferenceName, version);
+    }
+
+    public SelectedPackage(String stepName, String actionName, String packageId, String packageReferenceName, String version) {
         this.stepName = stepName;
+        this.actionName = actionName;
         this.packageId = packageId;
         this.packageReferenceName = packageReferenceName;
         this.version = version;
@@ -29,7 +37,7 @@ public class SelectedPackage {
 
     @Override
     public String toString() {
-        return "SelectedPackage [stepName=" + stepName + ", packageId=" + packageId + ", packageReferenceName=" + packageReferenceName + ", version=" + version + "]";
+        return "SelectedPackage [stepName=" + stepName + ", actionName=" + actionName + ", packageId=" + packageId + ", packageReferenceName=" + packageReferenceName + ", version=" + version + "]";
     }
 
 }
@@ -1,9 +1,16 @@
 package hudson.plugins.octopusdeploy;
 
 import com.octopusdeploy.api.OctopusApi;
+import com.octopusdeploy.api.data.Environment;
+import com.octopusdeploy.api.data.Project;
 import com.octopusdeploy.api.data.Space;
+import com.octopusdeploy.api.data.Tenant;
 import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
 import hudson.model.*;
+import hudson.plugins.octopusdeploy.cli.OctopusCliWrapperBuilder;
+import hudson.plugins.octopusdeploy.cli.ReleaseEngine;
 import hudson.plugins.octopusdeploy.utils.JenkinsHelpers;
 import hudson.tasks.*;
 import hudson.util.ComboBoxModel;
@@ -11,6 +18,7 @@ import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
+import jenkins.util.BuildListenerAdapter;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -18,8 +26,10 @@ import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -125,6 +135,32 @@ public abstract class AbstractOctopusDeployRecorderPostBuildStep extends Recorde
     @DataBoundSetter
     public void setTenantTag(String tenantTag) { this.tenantTag = sanitizeValue(tenantTag); }
 
+    /**
+     * Whether to deploy to every listed environment and tenant, rather than only the first of each
+     */
+    protected boolean deployToAllEnvironmentsAndTenants;
+    public boolean getDeployToAllEnvironmentsAndTenants() {
+        return deployToAllEnvironmentsAndTenants;
+    }
+
+    @DataBoundSetter
+    public void setDeployToAllEnvironmentsAndTenants(boolean deployToAllEnvironmentsAndTenants) {
+        this.deployToAllEnvironmentsAndTenants = deployToAllEnvironmentsAndTenants;
+    }
+
+    /**
+     * How many deployments are started at once when deploying to every environment and tenant, null for the default
+     */
+    protected Integer maxParallelDeployments;
+    public int getMaxParallelDeployments() {
+        return maxParallelDeployments == null ? DeploymentFanOut.DEFAULT_MAX_PARALLEL_DEPLOYMENTS : maxParallelDeployments;
+    }
+
+    @DataBoundSetter
+    public void setMaxParallelDeployments(int maxParallelDeployments) {
+        this.maxParallelDeployments = Math.max(1, maxParallelDeployments);
+    }
+
     /**
      * The additional arguments to pass to Octopus CLI
      */
@@ -190,6 +226,19 @@ public abstract class AbstractOctopusDeployRecorderPostBuildStep extends Recorde
         this.cancelOnTimeout = cancelOnTimeout;
     }
 
+    /**
+     * How a release is created or deployed, the name of a {@link ReleaseEngine} or blank to use the server's setting
+     */
+    protected String releaseEngine;
+    public String getReleaseEngine() {
+        return releaseEngine;
+    }
+
+    @DataBoundSetter
+    public void setReleaseEngine(String releaseEngine) {
+        this.releaseEngine = sanitizeValue(releaseEngine);
+    }
+
     public static OctoInstallation[] getOctopusToolInstallations() {
         Jenkins jenkins = JenkinsHelpers.getJenkins();
         OctoInstallation.DescriptorImpl descriptor = (OctoInstallation.DescriptorImpl) jenkins.getDescriptor(OctoInstallation.class);
@@ -197,7 +246,76 @@ public abstract class AbstractOctopusDeployRecorderPostBuildStep extends Recorde
     }
 
     public Boolean hasAdvancedOptions() {
-        return getVerboseLogging() || (getAdditionalArgs() != null && !getAdditionalArgs().isEmpty());
+        return getVerboseLogging() || (getAdditionalArgs() != null && !getAdditionalArgs().isEmpty())
+                || (getReleaseEngine() != null && !getReleaseEngine().isEmpty());
+    }
+
+    /**
+     * Queue a build summary link for each deployment, straight from the ids of the server tasks running them,
+     * rather than looking up the project, environment and tenant by name to find the deployment.
+     * @param run the build to add the links to
+     * @param log the console of the build
+     * @param taskIds the ids of the deployment tasks
+     */
+    protected void addDeploymentTaskSummaries(@Nonnull Run<?, ?> run, Log log, List<String> taskIds) {
+        for (String taskId : taskIds) {
+            BuildSummaryQueue.submit(run, log, serverId, spaceId,
+                    BuildInfoSummary.OctopusDeployEventType.Deployment, api -> api.getTasksApi().getPortalUrlForTask(taskId));
+        }
+    }
+
+    /**
+     * Look up the partial portal URL of a deployment by name, resolving the project, environment and tenant
+     * concurrently.
+     * @param tenant the tenant name, or blank for an untenanted deployment
+     */
+    protected static String getPortalUrlForDeployment(OctopusApi api, String project, String releaseVersion,
+                                                      String environment, String tenant) throws IOException {
+        CompletableFuture<Project> fullProject = api.async(() -> api.getProjectsApi().getProjectByName(project, true));
+        CompletableFuture<Environment> fullEnvironment = api.async(() -> api.getEnvironmentsApi().getEnvironmentByName(environment, true));
+        CompletableFuture<Tenant> fullTenant = tenant == null || tenant.isEmpty()
+                ? CompletableFuture.completedFuture(null)
+                : api.async(() -> api.getTenantsApi().getTenantByName(tenant, true));
+
+        String tenantId = OctopusApi.await(fullTenant) == null ? null : OctopusApi.await(fullTenant).getId();
+        return api.getDeploymentsApi().getPortalUrlForDeployment(
+                OctopusApi.await(fullProject).getId(), releaseVersion, OctopusApi.await(fullEnvironment).getId(), tenantId);
+    }
+
+    /**
+     * Deploy a release to every target, each deployment with an executor of its own, and then either wait for
+     * all of them together or record their tasks for a later wait step.
+     * The ids of the tasks of the deployments that were started are added to {@code taskIds}.
+     * @return SUCCESS when every deployment was started, and succeeded if waited for, FAILURE otherwise
+     */
+    protected Result deployToAllTargets(@Nonnull Run<?, ?> run, @Nonnull FilePath workspace, @Nonnull Launcher launcher,
+                                        EnvVars envVars, BuildListenerAdapter listenerAdapter, Log log, String project,
+                                        String releaseVersion, List<DeploymentFanOut.Target> targets,
+                                        List<String> variableCommands, List<String> taskIds)
+            throws IOException, InterruptedException {
+        DeploymentFanOut fanOut = new DeploymentFanOut(log, getMaxParallelDeployments());
+        Result result = fanOut.deployAll(targets,
+                // Each executor gets its own copy of the environment, as running a command changes it
+                () -> new OctopusCliWrapperBuilder(getToolId(), workspace, launcher, new EnvVars(envVars), listenerAdapter)
+                        .serverId(serverId)
+                        .spaceId(spaceId)
+                        .projectName(project)
+                        .verboseLogging(verboseLogging)
+                        .releaseEngine(releaseEngine)
+                        .build(),
+                (executor, target) -> executor.deployRelease(releaseVersion, target.getEnvironment(), target.getTenant(),
+                        tenantTag, variableCommands, false, null, false, additionalArgs),
+                taskIds);
+
+        if (!waitForDeployment) {
+            if (result == Result.SUCCESS || !taskIds.isEmpty()) {
+                OctopusDeploymentTasks.record(run, serverId, spaceId, taskIds);
+            }
+            return result;
+        }
+        OctopusApi api = OctopusDeployPlugin.getOctopusDeployServer(serverId).getApi().forSpace(spaceId);
+        Result waited = fanOut.waitForAll(api, taskIds, deploymentTimeout, cancelOnTimeout);
+        return result == Result.SUCCESS ? waited : result;
     }
 
     protected List<String> getVariableCommands(@Nonnull Run<?, ?> run, EnvironmentVariableValueInjector envInjector, Log log, String variables) {
@@ -287,6 +405,15 @@ public abstract class AbstractOctopusDeployRecorderPostBuildStep extends Recorde
             return new ComboBoxModel(OctopusDeployPlugin.getOctopusToolIds());
         }
 
+        public ListBoxModel doFillReleaseEngineItems() {
+            ListBoxModel engineItems = new ListBoxModel();
+            engineItems.add("Server default", "");
+            for (ReleaseEngine engine : ReleaseEngine.values()) {
+                engineItems.add(engine.getDisplayName(), engine.name());
+            }
+            return engineItems;
+        }
+
         public ListBoxModel doFillSpaceIdItems(@QueryParameter String serverId) {
             ListBoxModel spaceItems = new ListBoxModel();
             if(doCheckServerId(serverId).kind != FormValidation.Kind.OK) {
@@ -0,0 +1,133 @@
+package hudson.plugins.octopusdeploy;
+
+import com.octopusdeploy.api.OctopusApi;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Adds the Octopus links to the summary of builds in the background, so a slow Octopus server does not hold a build
+ * open after its release or deployment has succeeded. Each server gets a few threads of its own, and links that
+ * cannot be looked up are retried, waiting longer after each attempt. Links found while the build is still running
+ * are also written to its console, as are the lookups that failed.
+ */
+final class BuildSummaryQueue {
+    private static final Logger LOGGER = Logger.getLogger(BuildSummaryQueue.class.getName());
+
+    static final int MAX_CONCURRENT_LOOKUPS_PER_SERVER = 2;
+    static final int MAX_ATTEMPTS = 5;
+    static final long INITIAL_RETRY_DELAY_MILLIS = 5_000;
+
+    /**
+     * The delay before the first retry; not final so that tests need not wait for it.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    static long initialRetryDelayMillis = INITIAL_RETRY_DELAY_MILLIS;
+
+    private static final ConcurrentMap<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+    /**
+     * Looks up the partial portal URL of something a build created on an Octopus server.
+     */
+    interface Lookup {
+        /**
+         * @param api the API for the space the build worked in
+         * @return the partial portal URL, or null if there is nothing to link to
+         * @throws IOException if the server cannot be reached, in which case the lookup is retried
+         */
+        String portalUrl(OctopusApi api) throws IOException;
+    }
+
+    private BuildSummaryQueue() {
+    }
+
+    /**
+     * Queue a link to be added to the summary of a build.
+     * @param run the build
+     * @param log the console of the build, written to for as long as the build is running
+     * @param serverId the id of the Octopus server the link points to
+     * @param spaceId the space on the server, may be blank
+     * @param type what the link is to
+     * @param lookup looks up the link
+     * @return completes once the first attempt to add the link has finished, whether or not it succeeded
+     */
+    static CompletableFuture<Void> submit(Run<?, ?> run, Log log, String serverId, String spaceId,
+                                          BuildInfoSummary.OctopusDeployEventType type, Lookup lookup) {
+        CompletableFuture<Void> firstAttempt = new CompletableFuture<>();
+        submit(run.getExternalizableId(), log, serverId, spaceId, type, lookup, 1, firstAttempt);
+        return firstAttempt;
+    }
+
+    private static void submit(String runId, Log log, String serverId, String spaceId,
+                               BuildInfoSummary.OctopusDeployEventType type, Lookup lookup, int attempt,
+                               CompletableFuture<Void> firstAttempt) {
+        executorFor(serverId).execute(() -> {
+            try {
+                attempt(runId, log, serverId, spaceId, type, lookup, attempt);
+            } finally {
+                firstAttempt.complete(null);
+            }
+        });
+    }
+
+    private static void attempt(String runId, Log log, String serverId, String spaceId,
+                                BuildInfoSummary.OctopusDeployEventType type, Lookup lookup, int attempt) {
+        Run<?, ?> run = Run.fromExternalizableId(runId);
+        if (run == null) {
+            return;
+        }
+        try {
+            OctopusDeployServer server = OctopusDeployPlugin.getOctopusDeployServer(serverId);
+            String urlSuffix = lookup.portalUrl(server.getApi().forSpace(spaceId));
+            if (urlSuffix == null || urlSuffix.isEmpty()) {
+                return;
+            }
+            String serverUrl = server.getUrl();
+            if (serverUrl.endsWith("/")) {
+                serverUrl = serverUrl.substring(0, serverUrl.length() - 1);
+            }
+            String portalUrl = serverUrl + urlSuffix;
+            if (run.isLogUpdated()) {
+                log.info((type == BuildInfoSummary.OctopusDeployEventType.Release
+                        ? "Release created: \n\t" : "Deployment executed: \n\t") + portalUrl);
+            }
+            run.addAction(new BuildInfoSummary(type, portalUrl));
+            run.save();
+        } catch (Exception ex) {
+            if (attempt >= MAX_ATTEMPTS) {
+                if (run.isLogUpdated()) {
+                    log.error(String.format("Gave up adding the Octopus %s link to the build summary: %s", type, ex));
+                }
+                LOGGER.log(Level.WARNING, String.format("Gave up adding the Octopus %s link to %s", type, run), ex);
+                return;
+            }
+            long delay = initialRetryDelayMillis << (attempt - 1);
+            if (run.isLogUpdated()) {
+                log.error(String.format("Could not add the Octopus %s link to the build summary, trying again in %d ms: %s",
+                        type, delay, ex));
+            }
+            LOGGER.log(Level.FINE, String.format("Could not add the Octopus %s link to %s, trying again in %d ms",
+                    type, run, delay), ex);
+            Timer.get().schedule(() -> submit(runId, log, serverId, spaceId, type, lookup, attempt + 1,
+                    new CompletableFuture<>()), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static ExecutorService executorFor(String serverId) {
+        return executors.computeIfAbsent(serverId == null ? "" : serverId, id -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    MAX_CONCURRENT_LOOKUPS_PER_SERVER, MAX_CONCURRENT_LOOKUPS_PER_SERVER,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Octopus build summary " + id));
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+}
@@ -0,0 +1,195 @@
+package hudson.plugins.octopusdeploy;
+
+import com.google.common.base.Splitter;
+import com.octopusdeploy.api.OctopusApi;
+import com.octopusdeploy.api.data.Task;
+import hudson.model.Result;
+import hudson.plugins.octopusdeploy.cli.OctopusCliExecutor;
+import hudson.plugins.octopusdeploy.cli.RestApiExecutor;
+import hudson.plugins.octopusdeploy.cli.TimeSpans;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Deploys one release to every listed environment, for every listed tenant, a few deployments at a time,
+ * and then waits for all of the resulting server tasks together.
+ */
+class DeploymentFanOut {
+    static final int DEFAULT_MAX_PARALLEL_DEPLOYMENTS = 4;
+    static final long INITIAL_POLL_INTERVAL_MILLIS = 2_000;
+    static final long MAX_POLL_INTERVAL_MILLIS = 30_000;
+
+    /**
+     * Starts one deployment with an executor of its own.
+     */
+    interface Deployer {
+        Result deploy(OctopusCliExecutor executor, Target target) throws IOException, InterruptedException;
+    }
+
+    private final Log log;
+    private final int maxParallel;
+
+    DeploymentFanOut(Log log, int maxParallel) {
+        this.log = log;
+        this.maxParallel = Math.max(1, maxParallel);
+    }
+
+    /**
+     * Every combination of the comma-separated environments and tenants.
+     * @param environments the environment names
+     * @param tenants the tenant names, blank for untenanted deployments
+     * @return the deployment targets, environment by environment
+     */
+    static List<Target> targets(String environments, String tenants) {
+        Splitter splitter = Splitter.on(',').trimResults().omitEmptyStrings();
+        List<String> tenantNames = StringUtils.isBlank(tenants)
+                ? Collections.singletonList(null)
+                : splitter.splitToList(tenants);
+        List<Target> targets = new ArrayList<>();
+        for (String environment : splitter.split(environments)) {
+            for (String tenant : tenantNames) {
+                targets.add(new Target(environment, tenant));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Start a deployment to every target.
+     * @param targets where to deploy
+     * @param executors creates the executor for each deployment, as executors are not shared between threads
+     * @param deployer starts a deployment
+     * @param taskIds receives the ids of the server tasks of the deployments that were started
+     * @return SUCCESS when every deployment was started, FAILURE otherwise, or when there is nothing to deploy to
+     * @throws InterruptedException if interrupted while waiting for the deployments to start
+     */
+    Result deployAll(List<Target> targets, Supplier<OctopusCliExecutor> executors, Deployer deployer, List<String> taskIds)
+            throws InterruptedException {
+        if (targets.isEmpty()) {
+            log.error("There is nothing to deploy to: no environment was given.");
+            return Result.FAILURE;
+        }
+        log.info(String.format("Deploying to %d targets, %d at a time", targets.size(), maxParallel));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(maxParallel, targets.size())));
+        try {
+            Map<Target, Future<List<String>>> started = new LinkedHashMap<>();
+            for (Target target : targets) {
+                started.put(target, pool.submit(() -> {
+                    OctopusCliExecutor executor = executors.get();
+                    Result result = deployer.deploy(executor, target);
+                    if (result != Result.SUCCESS) {
+                        throw new IllegalStateException("Deployment failed with result " + result);
+                    }
+                    List<String> deploymentTaskIds = executor.getDeploymentTaskIds();
+                    if (deploymentTaskIds.isEmpty()) {
+                        log.info(String.format("The deployment to %s did not report its server task, so it cannot be waited for", target));
+                    }
+                    return deploymentTaskIds;
+                }));
+            }
+
+            Result result = Result.SUCCESS;
+            for (Map.Entry<Target, Future<List<String>>> deployment : started.entrySet()) {
+                try {
+                    taskIds.addAll(deployment.getValue().get());
+                } catch (ExecutionException ex) {
+                    log.error(String.format("Failed to deploy to %s: %s", deployment.getKey(), ex.getCause().getMessage()));
+                    result = Result.FAILURE;
+                }
+            }
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait for server tasks to complete, checking them all together, less often the longer they run.
+     * @param api the API for the space the tasks run in
+     * @param taskIds the tasks to wait for
+     * @param deploymentTimeout how long to wait (timespan format), blank for the default
+     * @param cancelOnTimeout whether to cancel the tasks that have not completed when the timeout is reached
+     * @return SUCCESS when every task succeeded, FAILURE otherwise
+     * @throws IOException if a task that timed out cannot be cancelled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Result waitForAll(OctopusApi api, List<String> taskIds, String deploymentTimeout, boolean cancelOnTimeout)
+            throws IOException, InterruptedException {
+        Duration timeout = StringUtils.isNotBlank(deploymentTimeout)
+                ? TimeSpans.parse(deploymentTimeout)
+                : RestApiExecutor.DEFAULT_DEPLOYMENT_TIMEOUT;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long pollInterval = INITIAL_POLL_INTERVAL_MILLIS;
+
+        Result result = Result.SUCCESS;
+        List<String> remaining = new ArrayList<>(taskIds);
+        while (true) {
+            for (Iterator<String> tasks = remaining.iterator(); tasks.hasNext(); ) {
+                String taskId = tasks.next();
+                Task task;
+                try {
+                    task = api.getTasksApi().getTask(taskId);
+                } catch (IOException ex) {
+                    // The tasks carry on running on the server; check again on the next poll until the deadline.
+                    log.error(String.format("Could not check deployment task %s, will retry: %s", taskId, ex.getMessage()));
+                    continue;
+                }
+                if (task.getIsCompleted()) {
+                    log.info(String.format("Deployment task %s finished: %s", taskId, task.getState()));
+                    if (!"Success".equals(task.getState())) {
+                        result = Result.FAILURE;
+                    }
+                    tasks.remove();
+                }
+            }
+            if (remaining.isEmpty()) {
+                return result;
+            }
+
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left <= 0) {
+                log.error(String.format("Deployment tasks %s did not complete within %s.", remaining, timeout));
+                if (cancelOnTimeout) {
+                    for (String taskId : remaining) {
+                        log.info(String.format("Cancelling deployment task %s.", taskId));
+                        api.getTasksApi().cancelTask(taskId);
+                    }
+                }
+                return Result.FAILURE;
+            }
+            log.info(String.format("Waiting for %d of %d deployment tasks", remaining.size(), taskIds.size()));
+            Thread.sleep(Math.min(pollInterval, left));
+            pollInterval = Math.min(MAX_POLL_INTERVAL_MILLIS, pollInterval * 3 / 2);
+        }
+    }
+
+    /**
+     * An environment, and optionally a tenant, to deploy to.
+     */
+    static final class Target {
+        private final String environment;
+        String getEnvironment() {
+            return environment;
+        }
+
+        private final String tenant;
+        String getTenant() {
+            return tenant;
+        }
+
+        Target(String environment, String tenant) {
+            this.environment = environment;
+            this.tenant = tenant;
+        }
+
+        @Override
+        public String toString() {
+            return tenant == null ? environment : environment + " for " + tenant;
+        }
+    }
+}
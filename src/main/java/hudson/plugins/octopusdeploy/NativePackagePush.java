@@ -0,0 +1,241 @@
+package hudson.plugins.octopusdeploy;
+
+import com.octopusdeploy.api.PackageUploader;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pushes packages to Octopus from the node that holds them, without the Octopus CLI: each package is streamed from
+ * disk straight to the server, several at a time, so the files never pass through the Jenkins controller.
+ * Unless existing packages should fail the push, the feed is first asked in one request which packages it already
+ * has: with IgnoreIfExists those are not sent at all, and with OverwriteExisting only those whose SHA-1 hash differs
+ * from the local file are sent.
+ * With delta uploads on, a package is sent as a delta against the latest version of it in the feed when the delta is
+ * small enough, and whole otherwise.
+ * An upload that fails because the connection dropped or the server failed is sent again after a backoff, without
+ * restarting the other packages. Before each retry the feed is asked whether it stored the package anyway, since the
+ * connection can drop after the server has received the whole file.
+ */
+final class NativePackagePush implements FilePath.FileCallable<Void> {
+    private static final long serialVersionUID = 1L;
+
+    static final int DEFAULT_MAX_PARALLEL_UPLOADS = 4;
+    static final double MAX_DELTA_RATIO = 0.95;
+    static final int DEFAULT_MAX_UPLOAD_ATTEMPTS = 3;
+    static final long RETRY_BASE_DELAY_MILLIS = 2000;
+    private static final long RETRY_MAX_DELAY_MILLIS = 60000;
+
+    /**
+     * The delay the backoff before a retry grows from; not final so that tests need not wait for it.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    static long retryBaseDelayMillis = RETRY_BASE_DELAY_MILLIS;
+
+    private final List<String> packagePaths;
+    private final String serverUrl;
+    private final String apiKey;
+    private final String spaceId;
+    private final boolean ignoreSslErrors;
+    private final String overwriteMode;
+    private final int maxParallelUploads;
+    private final boolean deltaUpload;
+    private final int maxUploadAttempts;
+    private final TaskListener listener;
+
+    /**
+     * @param packagePaths the absolute paths of the packages on the node
+     * @param serverUrl the URL of the Octopus server
+     * @param apiKey the API key to push with
+     * @param spaceId the space to push to, may be blank
+     * @param ignoreSslErrors whether to accept any server certificate
+     * @param overwriteMode what the server does when a package already exists
+     * @param maxParallelUploads how many packages to upload at once
+     * @param deltaUpload whether to upload deltas against the latest version of each package in the feed
+     * @param maxUploadAttempts how many times to send a package whose upload fails for a transient reason
+     * @param listener the build log
+     */
+    NativePackagePush(List<String> packagePaths, String serverUrl, String apiKey, String spaceId,
+                      boolean ignoreSslErrors, OverwriteMode overwriteMode, int maxParallelUploads, boolean deltaUpload, int maxUploadAttempts,
+                      TaskListener listener) {
+        this.packagePaths = new ArrayList<>(packagePaths);
+        this.serverUrl = serverUrl;
+        this.apiKey = apiKey;
+        this.spaceId = spaceId;
+        this.ignoreSslErrors = ignoreSslErrors;
+        this.overwriteMode = overwriteMode.name();
+        this.maxParallelUploads = Math.max(1, maxParallelUploads);
+        this.deltaUpload = deltaUpload;
+        this.maxUploadAttempts = Math.max(1, maxUploadAttempts);
+        this.listener = listener;
+    }
+
+    @Override
+    public Void invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        PackageUploader uploader = new PackageUploader(serverUrl, apiKey, spaceId, ignoreSslErrors);
+        Map<String, String> existing = findExistingPackages(uploader);
+        ExecutorService uploads = Executors.newFixedThreadPool(Math.min(maxParallelUploads, packagePaths.size()));
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (String packagePath : packagePaths) {
+                Path file = Paths.get(packagePath);
+                results.add(uploads.submit(() -> {
+                    if (isUnchanged(file, existing)) {
+                        log(String.format("Skipped %s, the server already has this package", file.getFileName()));
+                        return null;
+                    }
+                    long started = System.nanoTime();
+                    if (deltaUpload && uploadDelta(uploader, file, started)) {
+                        return null;
+                    }
+                    if (!uploadWithRetries(uploader, file)) {
+                        return null;
+                    }
+                    log(String.format("Pushed %s (%d KB) in %.1f s", file.getFileName(), file.toFile().length() / 1024,
+                            (System.nanoTime() - started) / 1e9));
+                    return null;
+                }));
+            }
+
+            int failed = 0;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException ex) {
+                    failed++;
+                    log(String.format("Failed to push %s: %s", Paths.get(packagePaths.get(i)).getFileName(),
+                            ex.getCause().getMessage()));
+                }
+            }
+            if (failed > 0) {
+                throw new IOException(String.format("Failed to push %d of %d packages", failed, results.size()));
+            }
+            return null;
+        } finally {
+            uploads.shutdownNow();
+        }
+    }
+
+    /**
+     * Try to upload a package as a delta.
+     * @return true if the delta was uploaded, false if the package should be uploaded whole
+     */
+    private boolean uploadDelta(PackageUploader uploader, Path file, long started) {
+        try {
+            long deltaSize = uploader.uploadDelta(file, overwriteMode, MAX_DELTA_RATIO);
+            if (deltaSize < 0) {
+                return false;
+            }
+            log(String.format("Pushed %s as a %d KB delta of its %d KB in %.1f s", file.getFileName(), deltaSize / 1024,
+                    file.toFile().length() / 1024, (System.nanoTime() - started) / 1e9));
+            return true;
+        } catch (IOException ex) {
+            log(String.format("Could not push %s as a delta, so pushing all of it: %s", file.getFileName(), ex.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Upload a package, retrying transient failures.
+     * @return true if the package was uploaded, false if a retry found the server had stored it already
+     */
+    private boolean uploadWithRetries(PackageUploader uploader, Path file) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                uploader.upload(file, overwriteMode);
+                return true;
+            } catch (IOException ex) {
+                if (attempt >= maxUploadAttempts || !PackageUploader.isTransient(ex)) {
+                    throw ex;
+                }
+                long delay = ThreadLocalRandom.current().nextLong(
+                        Math.min(RETRY_MAX_DELAY_MILLIS, retryBaseDelayMillis << Math.min(attempt, 20)) + 1);
+                log(String.format("Attempt %d of %d to push %s failed, retrying in %.1f s: %s", attempt,
+                        maxUploadAttempts, file.getFileName(), delay / 1e3, ex.getMessage()));
+                Thread.sleep(delay);
+                if (isStored(uploader, file)) {
+                    log(String.format("Pushed %s, the server stored it before the connection failed", file.getFileName()));
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ask the feed whether it has a package with the same content as a file.
+     * @return false if it does not, or it cannot be asked, in which case the package is sent again
+     */
+    private boolean isStored(PackageUploader uploader, Path file) {
+        String id = PackageUploader.packageResourceId(file);
+        if (id == null) {
+            return false;
+        }
+        try {
+            String hash = uploader.findPackages(Collections.singleton(id)).get(id);
+            return hash != null && hash.equalsIgnoreCase(PackageUploader.sha1(file));
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Ask the feed which of the packages it already has.
+     * @return the hash of each package the feed has, keyed by package id; empty when existing packages are not skipped
+     */
+    private Map<String, String> findExistingPackages(PackageUploader uploader) {
+        if (OverwriteMode.FailIfExists.name().equals(overwriteMode)) {
+            return Collections.emptyMap();
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        for (String packagePath : packagePaths) {
+            String id = PackageUploader.packageResourceId(Paths.get(packagePath));
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        try {
+            return uploader.findPackages(ids);
+        } catch (IOException ex) {
+            log("Could not check which packages the server already has, so pushing them all: " + ex.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    private boolean isUnchanged(Path file, Map<String, String> existing) throws IOException {
+        String id = PackageUploader.packageResourceId(file);
+        if (id == null || !existing.containsKey(id)) {
+            return false;
+        }
+        if (OverwriteMode.IgnoreIfExists.name().equals(overwriteMode)) {
+            return true;
+        }
+        String hash = existing.get(id);
+        return hash != null && hash.equalsIgnoreCase(PackageUploader.sha1(file));
+    }
+
+    private synchronized void log(String message) {
+        listener.getLogger().println(message);
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+    }
+}
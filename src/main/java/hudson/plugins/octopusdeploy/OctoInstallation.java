@@ -8,6 +8,7 @@ import hudson.init.Initializer;
 import hudson.model.EnvironmentSpecific;
 import hudson.model.Node;
 import hudson.model.TaskListener;
+import hudson.plugins.octopusdeploy.cli.CliTypeCache;
 import hudson.plugins.octopusdeploy.utils.JenkinsHelpers;
 import hudson.slaves.NodeSpecific;
 import hudson.tools.*;
@@ -130,6 +131,15 @@ public class OctoInstallation extends ToolInstallation implements NodeSpecific<O
             return "Octopus CLI";
         }
 
+        /**
+         * Replacing the tools may point a name at a different CLI, so any detected CLI types are forgotten.
+         */
+        @Override
+        public void setInstallations(OctoInstallation... installations) {
+            super.setInstallations(installations);
+            CliTypeCache.invalidateAll();
+        }
+
         @Nullable
         public OctoInstallation getInstallation(String name) {
             for (OctoInstallation i : getInstallations()) {
@@ -6,8 +6,6 @@ import com.octopusdeploy.api.*;
 import java.io.*;
 import java.util.*;
 
-import com.octopusdeploy.api.data.Environment;
-import com.octopusdeploy.api.data.Project;
 import hudson.*;
 import hudson.model.*;
 import hudson.plugins.octopusdeploy.cli.OctopusCliExecutor;
@@ -98,6 +96,24 @@ public class OctopusDeployDeploymentRecorder extends AbstractOctopusDeployRecord
             return;
         }
 
+        if (deployToAllEnvironmentsAndTenants) {
+            try {
+                List<DeploymentFanOut.Target> targets = DeploymentFanOut.targets(environment, tenant);
+                List<String> taskIds = new ArrayList<>();
+                Result result = deployToAllTargets(run, workspace, launcher, envVars, listenerAdapter, log,
+                        project, releaseVersion, targets, variableCommands, taskIds);
+                AddBuildSummary(run, log, project, releaseVersion, targets, taskIds);
+                success = result.equals(Result.SUCCESS);
+            } catch (Exception ex) {
+                log.fatal("Failed to deploy: " + getExceptionMessage(ex));
+                success = false;
+            }
+            if (!success) {
+                throw new AbortException("Failed to deploy");
+            }
+            return;
+        }
+
         try {
             // Parse environment (can be comma-separated, but wrapper expects single value)
             // For now, take the first environment
@@ -124,6 +140,7 @@ public class OctopusDeployDeploymentRecorder extends AbstractOctopusDeployRecord
                     .spaceId(spaceId)
                     .projectName(project)
                     .verboseLogging(verboseLogging)
+                    .releaseEngine(releaseEngine)
                     .build();
 
             // Execute deploy-release command
@@ -139,8 +156,13 @@ public class OctopusDeployDeploymentRecorder extends AbstractOctopusDeployRecord
                     additionalArgs);
 
             success = result.equals(Result.SUCCESS);
+            if (success && !waitForDeployment) {
+                OctopusDeploymentTasks.record(run, serverId, spaceId, wrapper.getDeploymentTaskIds());
+            }
             if (success) {
-                AddBuildSummary(run, log, project, releaseVersion, firstEnvironment, firstTenant);
+                AddBuildSummary(run, log, project, releaseVersion,
+                        Collections.singletonList(new DeploymentFanOut.Target(firstEnvironment, firstTenant)),
+                        wrapper.getDeploymentTaskIds());
             }
         } catch (Exception ex) {
             log.fatal("Failed to deploy: " + getExceptionMessage(ex));
@@ -152,33 +174,18 @@ public class OctopusDeployDeploymentRecorder extends AbstractOctopusDeployRecord
         }
     }
 
-    private void AddBuildSummary(@NotNull Run<?, ?> run, Log log, String project, String releaseVersion, String environment, String tenant) {
-        try {
-            OctopusDeployServer octopusDeployServer = OctopusDeployPlugin.getOctopusDeployServer(serverId);
-            String serverUrl = octopusDeployServer.getUrl();
-            if (serverUrl.endsWith("/")) {
-                serverUrl = serverUrl.substring(0, serverUrl.length() - 1);
-            }
-
-            OctopusApi api = octopusDeployServer.getApi().forSpace(spaceId);
-            Project fullProject = api.getProjectsApi().getProjectByName(project, true);
-            Environment fullEnvironment = api.getEnvironmentsApi().getEnvironmentByName(environment, true);
-
-            String tenantId = null;
-            if (tenant != null && !tenant.isEmpty()) {
-                Tenant fullTenant = api.getTenantsApi().getTenantByName(tenant, true);
-                tenantId = fullTenant.getId();
+    private void AddBuildSummary(@NotNull Run<?, ?> run, Log log, String project, String releaseVersion,
+                                 List<DeploymentFanOut.Target> deployments, List<String> deploymentTaskIds) {
+        log.info("Adding the deployment links to the build summary in the background");
+        if (!deploymentTaskIds.isEmpty()) {
+            addDeploymentTaskSummaries(run, log, deploymentTaskIds);
+        } else {
+            // The CLI did not report its tasks, so find the deployments by name
+            for (DeploymentFanOut.Target deployment : deployments) {
+                BuildSummaryQueue.submit(run, log, serverId, spaceId, BuildInfoSummary.OctopusDeployEventType.Deployment, api -> {
+                    return getPortalUrlForDeployment(api, project, releaseVersion, deployment.getEnvironment(), deployment.getTenant());
+                });
             }
-
-            String urlSuffix = api.getDeploymentsApi().getPortalUrlForDeployment(fullProject.getId(), releaseVersion, fullEnvironment.getId(), tenantId);
-
-            if (urlSuffix != null && !urlSuffix.isEmpty()) {
-                String portalUrl = serverUrl + urlSuffix;
-                log.info("Deployment executed: \n\t" + portalUrl);
-                run.addAction(new BuildInfoSummary(BuildInfoSummary.OctopusDeployEventType.Deployment, portalUrl));
-            }
-        } catch (Exception ex) {
-            log.error("Failed to generate build summary: " + getExceptionMessage(ex));
         }
     }
 
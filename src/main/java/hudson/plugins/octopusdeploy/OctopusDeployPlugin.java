@@ -1,5 +1,6 @@
 package hudson.plugins.octopusdeploy;
 
+import com.octopusdeploy.api.ResilientHttpTransport;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.model.Descriptor;
@@ -154,8 +155,16 @@ public class OctopusDeployPlugin extends GlobalPluginConfiguration {
 
         @DataBoundSetter
         public void setOctopusDeployServers(List<OctopusDeployServer> servers) {
+            List<OctopusDeployServer> replaced = octopusDeployServers;
             octopusDeployServers = servers;
             save();
+            if (replaced != null) {
+                for (OctopusDeployServer server : replaced) {
+                    if (servers == null || servers.stream().noneMatch(kept -> kept == server)) {
+                        server.shutdown();
+                    }
+                }
+            }
         }
 
         public DescriptorImpl() {
@@ -257,6 +266,64 @@ public class OctopusDeployPlugin extends GlobalPluginConfiguration {
             return FormValidation.ok();
         }
 
+        /**
+         * Discard the cached projects, environments, tenants and tag sets of a server,
+         * so the next request for each is loaded from Octopus.
+         * @param serverId the uniqueId for an Octopus Deploy instance
+         * @return Form validation to present on the Jenkins UI
+         */
+        @RequirePOST
+        public FormValidation doRefreshMetadataCache(@QueryParameter String serverId) {
+            JenkinsHelpers.getJenkins().checkPermission(Jenkins.ADMINISTER);
+            OctopusDeployServer server = getOctopusDeployServer(sanitizeValue(serverId));
+            if (server == null) {
+                return FormValidation.warning("Save the configuration before refreshing the cache of a new server.");
+            }
+            server.getApi().getMetadataCache().invalidateAll();
+            return FormValidation.ok("Cache cleared. Octopus metadata will be reloaded on next use.");
+        }
+
+        /**
+         * Report whether requests to a server are being sent, or are paused by its circuit breaker.
+         * @param serverId the uniqueId for an Octopus Deploy instance
+         * @return Form validation to present on the Jenkins UI
+         */
+        @RequirePOST
+        public FormValidation doCircuitBreakerHealth(@QueryParameter String serverId) {
+            JenkinsHelpers.getJenkins().checkPermission(Jenkins.ADMINISTER);
+            OctopusDeployServer server = getOctopusDeployServer(sanitizeValue(serverId));
+            if (server == null) {
+                return FormValidation.warning("Save the configuration before checking a new server.");
+            }
+            ResilientHttpTransport transport = server.getTransport();
+            int failures = transport.getConsecutiveFailures();
+            switch (transport.getCircuitState()) {
+                case OPEN:
+                    return FormValidation.error("Requests are paused after " + failures + " failed in a row.");
+                case HALF_OPEN:
+                    return FormValidation.warning("Requests were paused after " + failures
+                            + " failed in a row; the next request will decide whether they resume.");
+                default:
+                    return FormValidation.ok("Requests are being sent. " + failures + " failed since the last success.");
+            }
+        }
+
+        /**
+         * Close the circuit breaker of a server, so requests to it are sent again straight away.
+         * @param serverId the uniqueId for an Octopus Deploy instance
+         * @return Form validation to present on the Jenkins UI
+         */
+        @RequirePOST
+        public FormValidation doResetCircuitBreaker(@QueryParameter String serverId) {
+            JenkinsHelpers.getJenkins().checkPermission(Jenkins.ADMINISTER);
+            OctopusDeployServer server = getOctopusDeployServer(sanitizeValue(serverId));
+            if (server == null) {
+                return FormValidation.warning("Save the configuration before resetting a new server.");
+            }
+            server.getTransport().resetCircuit();
+            return FormValidation.ok("Requests to this server will be sent again.");
+        }
+
         /**
          * Validate that the apiKey is:
          *  - Not empty
@@ -55,6 +55,58 @@ public class OctopusDeployPushRecorder extends AbstractOctopusDeployRecorderBuil
         return this.spaceId;
     }
 
+    /**
+     * Whether packages are uploaded from the node that holds them, rather than with the Octopus CLI
+     */
+    private boolean useNativeUpload;
+    public boolean getUseNativeUpload() {
+        return useNativeUpload;
+    }
+
+    @DataBoundSetter
+    public void setUseNativeUpload(boolean useNativeUpload) {
+        this.useNativeUpload = useNativeUpload;
+    }
+
+    /**
+     * Whether the native upload sends deltas against the latest version of each package in the feed
+     */
+    private boolean useDeltaUpload;
+    public boolean getUseDeltaUpload() {
+        return useDeltaUpload;
+    }
+
+    @DataBoundSetter
+    public void setUseDeltaUpload(boolean useDeltaUpload) {
+        this.useDeltaUpload = useDeltaUpload;
+    }
+
+    /**
+     * The number of packages uploaded at the same time by the native upload, null for the default
+     */
+    private Integer maxParallelUploads;
+    public int getMaxParallelUploads() {
+        return maxParallelUploads == null ? NativePackagePush.DEFAULT_MAX_PARALLEL_UPLOADS : maxParallelUploads;
+    }
+
+    @DataBoundSetter
+    public void setMaxParallelUploads(int maxParallelUploads) {
+        this.maxParallelUploads = Math.max(1, maxParallelUploads);
+    }
+
+    /**
+     * How many times the native upload sends a package whose upload fails for a transient reason, null for the default
+     */
+    private Integer maxUploadAttempts;
+    public int getMaxUploadAttempts() {
+        return maxUploadAttempts == null ? NativePackagePush.DEFAULT_MAX_UPLOAD_ATTEMPTS : maxUploadAttempts;
+    }
+
+    @DataBoundSetter
+    public void setMaxUploadAttempts(int maxUploadAttempts) {
+        this.maxUploadAttempts = Math.max(1, maxUploadAttempts);
+    }
+
     @DataBoundConstructor
     public OctopusDeployPushRecorder(String serverId, String toolId, String packagePaths,
                                      OverwriteMode overwriteMode) {
@@ -145,6 +197,21 @@ public class OctopusDeployPushRecorder extends AbstractOctopusDeployRecorderBuil
                 packagePathsList.add(file.absolutize().getRemote());
             }
 
+            if (useNativeUpload) {
+                checkState(StringUtils.isBlank(additionalArgs),
+                        "Additional arguments are passed to the Octopus CLI, which the native upload does not use. "
+                                + "Remove them, or turn off the native upload.");
+                OctopusDeployServer server = OctopusDeployPlugin.getOctopusDeployServer(serverId);
+                if (server == null) {
+                    throw new ServerConfigurationNotFoundException(serverId);
+                }
+                log.info(String.format("Pushing %d packages, %d at a time", packagePathsList.size(), getMaxParallelUploads()));
+                workspace.act(new NativePackagePush(packagePathsList, server.getUrl(), server.getApiKey().getPlainText(),
+                        spaceId, server.getIgnoreSslErrors(), overwriteMode, getMaxParallelUploads(), useDeltaUpload, getMaxUploadAttempts(),
+                        listener));
+                return;
+            }
+
             // Create wrapper
             OctopusCliExecutor wrapper = new OctopusCliWrapperBuilder(
                     getToolId(), workspace, launcher, envVars, listenerAdapter)
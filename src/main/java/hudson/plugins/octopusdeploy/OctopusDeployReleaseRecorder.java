@@ -2,7 +2,6 @@ package hudson.plugins.octopusdeploy;
 
 import com.google.common.base.Splitter;
 import com.octopusdeploy.api.OctopusApi;
-import com.octopusdeploy.api.data.Environment;
 import com.octopusdeploy.api.data.Project;
 import com.octopusdeploy.api.data.*;
 import hudson.*;
@@ -361,6 +360,7 @@ public class OctopusDeployReleaseRecorder extends AbstractOctopusDeployRecorderP
                     .spaceId(spaceId)
                     .projectName(project)
                     .verboseLogging(verboseLogging)
+                    .releaseEngine(releaseEngine)
                     .build();
 
             // Execute create-release command
@@ -372,7 +372,7 @@ public class OctopusDeployReleaseRecorder extends AbstractOctopusDeployRecorderP
                     packageStrings,
                     gitRef,
                     gitCommit,
-                    firstEnvironment,
+                    deployToAllEnvironmentsAndTenants ? null : firstEnvironment,
                     firstTenant,
                     tenantTag,
                     variableCommands,
@@ -383,8 +383,24 @@ public class OctopusDeployReleaseRecorder extends AbstractOctopusDeployRecorderP
             );
 
             success = result.equals(Result.SUCCESS);
-            if (success) {
-                AddBuildSummary(run, log, project, releaseVersion, firstEnvironment, firstTenant);
+            if (success && deployThisRelease && deployToAllEnvironmentsAndTenants) {
+                String createdVersion = StringUtils.isNotBlank(releaseVersion) ? releaseVersion : wrapper.getCreatedReleaseVersion();
+                checkState(StringUtils.isNotBlank(createdVersion),
+                        "Cannot deploy to every environment and tenant, as the version of the created release is not known");
+                List<DeploymentFanOut.Target> targets = DeploymentFanOut.targets(environment, tenant);
+                List<String> taskIds = new ArrayList<>();
+                success = deployToAllTargets(run, workspace, launcher, envVars, listenerAdapter, log,
+                        project, createdVersion, targets, variableCommands, taskIds).equals(Result.SUCCESS);
+                AddBuildSummary(run, log, project, createdVersion, wrapper.getCreatedReleaseId(), targets, taskIds);
+            } else {
+                if (success && deployThisRelease && !waitForDeployment) {
+                    OctopusDeploymentTasks.record(run, serverId, spaceId, wrapper.getDeploymentTaskIds());
+                }
+                if (success) {
+                    AddBuildSummary(run, log, project, releaseVersion, wrapper.getCreatedReleaseId(), deployThisRelease
+                            ? Collections.singletonList(new DeploymentFanOut.Target(firstEnvironment, firstTenant))
+                            : Collections.emptyList(), wrapper.getDeploymentTaskIds());
+                }
             }
         } catch (Exception ex) {
             log.fatal("Failed to create release: " + getExceptionMessage(ex));
@@ -396,46 +412,33 @@ public class OctopusDeployReleaseRecorder extends AbstractOctopusDeployRecorderP
         }
     }
 
-    private void AddBuildSummary(@NotNull Run<?, ?> run, Log log, String project, String releaseVersion, String environment, String tenant) {
-        try {
-            OctopusDeployServer server = OctopusDeployPlugin.getOctopusDeployServer(serverId);
-            String serverUrl = server.getUrl();
-            if (serverUrl.endsWith("/")) {
-                serverUrl = serverUrl.substring(0, serverUrl.length() - 1);
+    private void AddBuildSummary(@NotNull Run<?, ?> run, Log log, String project, String releaseVersion, String releaseId,
+                                 List<DeploymentFanOut.Target> deployments, List<String> deploymentTaskIds) {
+        log.info("Adding the release and deployment links to the build summary in the background");
+        BuildSummaryQueue.submit(run, log, serverId, spaceId, BuildInfoSummary.OctopusDeployEventType.Release, api -> {
+            if (StringUtils.isNotBlank(releaseId)) {
+                return api.getReleasesApi().getPortalUrlForReleaseId(releaseId);
             }
-            OctopusApi api = server.getApi().forSpace(spaceId);
             Project fullProject = api.getProjectsApi().getProjectByName(project, true);
-                /*
-                    It is not necessary to supply the release version, as this can (and probably will be in most cases)
-                    generated by Octopus. If the version is not supplied, we link to the latest release for a project,
-                    otherwise we link to the specified release.
-                 */
-            String urlSuffix = StringUtils.isBlank(releaseVersion)
+            /*
+                It is not necessary to supply the release version, as this can (and probably will be in most cases)
+                generated by Octopus. If the version is not supplied, we link to the latest release for a project,
+                otherwise we link to the specified release.
+             */
+            return StringUtils.isBlank(releaseVersion)
                     ? api.getReleasesApi().getPortalUrlForLatestRelease(fullProject.getId())
                     : api.getReleasesApi().getPortalUrlForRelease(fullProject.getId(), releaseVersion);
-            String portalUrl = serverUrl + urlSuffix;
-            log.info("Release created: \n\t" + portalUrl);
-            run.addAction(new BuildInfoSummary(BuildInfoSummary.OctopusDeployEventType.Release, portalUrl));
-
-            if (deployThisRelease) {
-                Environment fullEnvironment = api.getEnvironmentsApi().getEnvironmentByName(environment, true);
+        });
 
-                String tenantId = null;
-                if (tenant != null && !tenant.isEmpty()) {
-                    Tenant fullTenant = api.getTenantsApi().getTenantByName(tenant, true);
-                    tenantId = fullTenant.getId();
-                }
-
-                String deploymenturlSuffix = api.getDeploymentsApi().getPortalUrlForDeployment(fullProject.getId(), releaseVersion, fullEnvironment.getId(), tenantId);
-
-                if (deploymenturlSuffix != null && !deploymenturlSuffix.isEmpty()) {
-                    String portalDeploymentUrl = serverUrl + deploymenturlSuffix;
-                    log.info("Deployment executed: \n\t" + portalDeploymentUrl);
-                    run.addAction(new BuildInfoSummary(BuildInfoSummary.OctopusDeployEventType.Deployment, portalDeploymentUrl));
-                }
+        if (!deploymentTaskIds.isEmpty()) {
+            addDeploymentTaskSummaries(run, log, deploymentTaskIds);
+        } else {
+            // The CLI did not report its tasks, so find the deployments by name
+            for (DeploymentFanOut.Target deployment : deployments) {
+                BuildSummaryQueue.submit(run, log, serverId, spaceId, BuildInfoSummary.OctopusDeployEventType.Deployment, api -> {
+                    return getPortalUrlForDeployment(api, project, releaseVersion, deployment.getEnvironment(), deployment.getTenant());
+                });
             }
-        } catch (Exception ex) {
-            log.error("Failed to generate build summary: " + getExceptionMessage(ex));
         }
     }
 
@@ -1,10 +1,18 @@
 package hudson.plugins.octopusdeploy;
 
+import com.octopusdeploy.api.MetadataCache;
 import com.octopusdeploy.api.OctopusApi;
+import com.octopusdeploy.api.PooledHttpTransport;
+import com.octopusdeploy.api.RequestThrottle;
+import com.octopusdeploy.api.ResilientHttpTransport;
+import com.octopusdeploy.api.ThrottledHttpTransport;
+import hudson.plugins.octopusdeploy.cli.ReleaseEngine;
 import hudson.util.Secret;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.Serializable;
+import java.time.Duration;
 
 import static hudson.plugins.octopusdeploy.services.StringUtil.sanitizeValue;
 
@@ -13,7 +21,7 @@ import static hudson.plugins.octopusdeploy.services.StringUtil.sanitizeValue;
  */
 public class OctopusDeployServer implements Serializable {
     // This value should be incremented every time that this serializable's contract changes
-    private static final long serialVersionUID = 1;
+    private static final long serialVersionUID = 2;
             
     private final boolean isDefault;
     public boolean isDefault() {
@@ -44,15 +52,189 @@ public class OctopusDeployServer implements Serializable {
         return ignoreSslErrors;
     }
 
+    /**
+     * The maximum number of pooled connections to this server, null for the default
+     */
+    private Integer connectionPoolSize;
+    public int getConnectionPoolSize() {
+        return connectionPoolSize == null ? PooledHttpTransport.DEFAULT_POOL_SIZE : connectionPoolSize;
+    }
+
+    @DataBoundSetter
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        this.connectionPoolSize = Math.max(1, connectionPoolSize);
+    }
+
+    /**
+     * Seconds an idle connection pool is kept before its connections are discarded, null for the default
+     */
+    private Integer connectionIdleTimeout;
+    public int getConnectionIdleTimeout() {
+        return connectionIdleTimeout == null ? (int) PooledHttpTransport.DEFAULT_IDLE_TIMEOUT.getSeconds() : connectionIdleTimeout;
+    }
+
+    @DataBoundSetter
+    public void setConnectionIdleTimeout(int connectionIdleTimeout) {
+        this.connectionIdleTimeout = Math.max(0, connectionIdleTimeout);
+    }
+
+    private boolean useHttp2;
+    public boolean getUseHttp2() {
+        return useHttp2;
+    }
+
+    @DataBoundSetter
+    public void setUseHttp2(boolean useHttp2) {
+        this.useHttp2 = useHttp2;
+    }
+
+    /**
+     * Requests and CLI commands that may start each second, 0 for no limit
+     */
+    private double requestsPerSecond;
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    @DataBoundSetter
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = Math.max(0, requestsPerSecond);
+    }
+
+    /**
+     * Requests and CLI commands that may be in flight at once, 0 for no limit
+     */
+    private int maxInFlightRequests;
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    @DataBoundSetter
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = Math.max(0, maxInFlightRequests);
+    }
+
+    /**
+     * Times a failed request is retried, null for the default
+     */
+    private Integer maxRetries;
+    public int getMaxRetries() {
+        return maxRetries == null ? ResilientHttpTransport.DEFAULT_MAX_RETRIES : maxRetries;
+    }
+
+    @DataBoundSetter
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * Consecutive failed requests that pause requests to this server, null for the default
+     */
+    private Integer circuitBreakerThreshold;
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold == null ? ResilientHttpTransport.DEFAULT_FAILURE_THRESHOLD : circuitBreakerThreshold;
+    }
+
+    @DataBoundSetter
+    public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = Math.max(0, circuitBreakerThreshold);
+    }
+
+    /**
+     * Seconds that requests to this server are paused for once the circuit breaker opens, null for the default
+     */
+    private Integer circuitBreakerOpenSeconds;
+    public int getCircuitBreakerOpenSeconds() {
+        return circuitBreakerOpenSeconds == null
+                ? (int) ResilientHttpTransport.DEFAULT_OPEN_DURATION.getSeconds() : circuitBreakerOpenSeconds;
+    }
+
+    @DataBoundSetter
+    public void setCircuitBreakerOpenSeconds(int circuitBreakerOpenSeconds) {
+        this.circuitBreakerOpenSeconds = Math.max(1, circuitBreakerOpenSeconds);
+    }
+
+    /**
+     * Seconds that projects, environments, tenants and tag sets are cached for, null for the default
+     */
+    private Integer metadataCacheTtl;
+    public int getMetadataCacheTtl() {
+        return metadataCacheTtl == null ? (int) MetadataCache.DEFAULT_TTL.getSeconds() : metadataCacheTtl;
+    }
+
+    @DataBoundSetter
+    public void setMetadataCacheTtl(int metadataCacheTtl) {
+        this.metadataCacheTtl = Math.max(0, metadataCacheTtl);
+    }
+
+    /**
+     * Whether steps create and deploy releases over the REST API, rather than with the CLI, unless they choose otherwise
+     */
+    private boolean useRestApiForReleases;
+    public boolean getUseRestApiForReleases() {
+        return useRestApiForReleases;
+    }
+
+    @DataBoundSetter
+    public void setUseRestApiForReleases(boolean useRestApiForReleases) {
+        this.useRestApiForReleases = useRestApiForReleases;
+    }
+
+    public ReleaseEngine getReleaseEngine() {
+        return useRestApiForReleases ? ReleaseEngine.REST_API : ReleaseEngine.CLI;
+    }
+
+    private transient RequestThrottle throttle;
+    private transient ResilientHttpTransport transport;
     private transient OctopusApi api;
-    public OctopusApi getApi() {
-        ///TODO use better approach to achieve Laziness
+    public synchronized OctopusApi getApi() {
         if (api == null) {
-            api = new OctopusApi(url, apiKey.getPlainText());
+            transport = new ResilientHttpTransport(
+                    new ThrottledHttpTransport(
+                            new PooledHttpTransport(getConnectionPoolSize(), Duration.ofSeconds(getConnectionIdleTimeout()), useHttp2,
+                                    ignoreSslErrors),
+                            getThrottle()),
+                    getMaxRetries(), ResilientHttpTransport.DEFAULT_BASE_DELAY, ResilientHttpTransport.DEFAULT_MAX_DELAY,
+                    getCircuitBreakerThreshold(), Duration.ofSeconds(getCircuitBreakerOpenSeconds()));
+            MetadataCache metadataCache = new MetadataCache(
+                    Duration.ofSeconds(getMetadataCacheTtl()), MetadataCache.DEFAULT_MAX_ENTRIES);
+            api = new OctopusApi(url, apiKey.getPlainText(), transport, metadataCache);
         }
         return api;
     }
 
+    /**
+     * Lets the threads of this server's API go once the server has been replaced by a new configuration.
+     * Builds still holding the API carry on, making their calls on their own threads.
+     */
+    synchronized void shutdown() {
+        if (api != null) {
+            api.shutdown();
+        }
+    }
+
+    /**
+     * Returns the limits shared by the REST requests and CLI commands sent to this server.
+     * @return the throttle, which never waits unless a rate or in-flight limit is configured
+     */
+    public synchronized RequestThrottle getThrottle() {
+        if (throttle == null) {
+            throttle = requestsPerSecond > 0 || maxInFlightRequests > 0
+                    ? new RequestThrottle(requestsPerSecond, maxInFlightRequests)
+                    : RequestThrottle.UNLIMITED;
+        }
+        return throttle;
+    }
+
+    /**
+     * Returns the circuit breaker of the requests to this server.
+     * @return the resilient transport the API sends its requests through
+     */
+    public synchronized ResilientHttpTransport getTransport() {
+        getApi();
+        return transport;
+    }
+
     public OctopusDeployServer(String serverId, String url, Secret apiKey, boolean isDefault, boolean ignoreSslErrors) {
         this.serverId = sanitizeValue(serverId);
         this.url = sanitizeValue(url);
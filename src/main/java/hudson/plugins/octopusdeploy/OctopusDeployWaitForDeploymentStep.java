@@ -0,0 +1,314 @@
+package hudson.plugins.octopusdeploy;
+
+import com.octopusdeploy.api.data.Task;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.plugins.octopusdeploy.OctopusDeploymentTasks.DeploymentTask;
+import hudson.plugins.octopusdeploy.cli.RestApiExecutor;
+import hudson.plugins.octopusdeploy.cli.TimeSpans;
+import jenkins.util.BuildListenerAdapter;
+import jenkins.util.Timer;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static hudson.plugins.octopusdeploy.services.StringUtil.sanitizeValue;
+
+/**
+ * Waits for Octopus deployments to finish without occupying an executor.
+ * By default it waits for every deployment started by earlier steps of the build that did not wait themselves;
+ * the task status is polled from the controller, less often the longer a deployment runs.
+ * The step fails rather than finding nothing to wait for when earlier steps started deployments without reporting
+ * their tasks, as steps run with the legacy Octopus CLI do.
+ */
+public class OctopusDeployWaitForDeploymentStep extends Step implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    /**
+     * The server the task runs on, only needed when waiting for a given task
+     */
+    private String serverId;
+    public String getServerId() {
+        return serverId;
+    }
+
+    @DataBoundSetter
+    public void setServerId(String serverId) {
+        this.serverId = sanitizeValue(serverId);
+    }
+
+    private String spaceId;
+    public String getSpaceId() {
+        return spaceId;
+    }
+
+    @DataBoundSetter
+    public void setSpaceId(String spaceId) {
+        this.spaceId = sanitizeValue(spaceId);
+    }
+
+    /**
+     * The task to wait for, blank to wait for the deployments started by the build
+     */
+    private String taskId;
+    public String getTaskId() {
+        return taskId;
+    }
+
+    @DataBoundSetter
+    public void setTaskId(String taskId) {
+        this.taskId = sanitizeValue(taskId);
+    }
+
+    /**
+     * Maximum time (timespan format) to wait for the deployments to finish (default 00:10:00)
+     */
+    private String deploymentTimeout;
+    public String getDeploymentTimeout() {
+        return deploymentTimeout;
+    }
+
+    @DataBoundSetter
+    public void setDeploymentTimeout(String deploymentTimeout) {
+        this.deploymentTimeout = sanitizeValue(deploymentTimeout);
+    }
+
+    private boolean cancelOnTimeout;
+    public boolean getCancelOnTimeout() {
+        return cancelOnTimeout;
+    }
+
+    @DataBoundSetter
+    public void setCancelOnTimeout(boolean cancelOnTimeout) {
+        this.cancelOnTimeout = cancelOnTimeout;
+    }
+
+    @DataBoundConstructor
+    public OctopusDeployWaitForDeploymentStep() {
+    }
+
+    @Override
+    public StepExecution start(StepContext context) {
+        return new Execution(context, this);
+    }
+
+    static final class Execution extends StepExecution {
+        private static final long serialVersionUID = 1;
+        static final long INITIAL_POLL_INTERVAL_MILLIS = 2_000;
+        static final long MAX_POLL_INTERVAL_MILLIS = 60_000;
+        static final int POLL_THREADS = 4;
+
+        /**
+         * Runs the polls, whose requests can block for a while on retries and throttling, so that the shared
+         * {@link Timer} only schedules them and is never held up.
+         */
+        private static final ExecutorService POLLS = Executors.newFixedThreadPool(POLL_THREADS,
+                new NamingThreadFactory(new DaemonThreadFactory(), "Octopus deployment wait"));
+
+        private final OctopusDeployWaitForDeploymentStep step;
+        private final List<DeploymentTask> waited = new ArrayList<>();
+        private List<DeploymentTask> remaining;
+        private Duration timeout;
+        private long deadline;
+        private long pollInterval = INITIAL_POLL_INTERVAL_MILLIS;
+        private boolean failed;
+        private transient volatile ScheduledFuture<?> poll;
+        private transient volatile boolean stopped;
+
+        Execution(StepContext context, OctopusDeployWaitForDeploymentStep step) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            Run<?, ?> run = getContext().get(Run.class);
+            if (StringUtils.isNotBlank(step.taskId)) {
+                String serverId = step.serverId;
+                if (StringUtils.isBlank(serverId)) {
+                    OctopusDeployServer server = OctopusDeployPlugin.getDefaultOctopusDeployServer();
+                    if (server == null) {
+                        throw new AbortException(String.format("No Octopus Deploy server is configured to wait for "
+                                + "deployment task %s on: add one in the global configuration, or give serverId.",
+                                step.taskId));
+                    }
+                    serverId = server.getServerId();
+                }
+                remaining = new ArrayList<>(Collections.singletonList(new DeploymentTask(serverId, step.spaceId, step.taskId)));
+            } else {
+                OctopusDeploymentTasks tasks = run.getAction(OctopusDeploymentTasks.class);
+                remaining = tasks == null ? new ArrayList<>() : tasks.getPending();
+                int untracked = tasks == null ? 0 : tasks.getUntracked();
+                if (untracked > 0) {
+                    String message = String.format("%d earlier step(s) started Octopus deployments without reporting "
+                            + "their server tasks, so they cannot be waited for. The legacy Octopus CLI does not report "
+                            + "them: use the current Octopus CLI or the REST API release engine, or wait in the step "
+                            + "that deploys.", untracked);
+                    if (remaining.isEmpty()) {
+                        forgetWaitedTasks();
+                        getContext().onFailure(new AbortException(message));
+                        return true;
+                    }
+                    log().error(message);
+                }
+            }
+            if (remaining.isEmpty()) {
+                log().info("There are no Octopus deployments to wait for.");
+                getContext().onSuccess(null);
+                return true;
+            }
+
+            timeout = StringUtils.isNotBlank(step.deploymentTimeout)
+                    ? TimeSpans.parse(step.deploymentTimeout)
+                    : RestApiExecutor.DEFAULT_DEPLOYMENT_TIMEOUT;
+            deadline = System.currentTimeMillis() + timeout.toMillis();
+            log().info("Waiting for Octopus deployment tasks " + remaining);
+            schedule(0);
+            return false;
+        }
+
+        @Override
+        public void onResume() {
+            schedule(0);
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            stopped = true;
+            ScheduledFuture<?> scheduled = poll;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            getContext().onFailure(cause);
+        }
+
+        @Override
+        public String getStatus() {
+            return "Waiting for Octopus deployment tasks " + remaining;
+        }
+
+        private void schedule(long delay) {
+            poll = Timer.get().schedule(() -> POLLS.execute(this::poll), delay, TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void poll() {
+            if (stopped) {
+                return;
+            }
+            try {
+                for (Iterator<DeploymentTask> tasks = remaining.iterator(); tasks.hasNext(); ) {
+                    DeploymentTask deploymentTask = tasks.next();
+                    Task task = OctopusDeployPlugin.getOctopusDeployServer(deploymentTask.getServerId()).getApi()
+                            .forSpace(deploymentTask.getSpaceId()).getTasksApi().getTask(deploymentTask.getTaskId());
+                    if (task.getIsCompleted()) {
+                        log().info(String.format("Deployment task %s finished: %s", deploymentTask, task.getState()));
+                        failed |= !"Success".equals(task.getState());
+                        waited.add(deploymentTask);
+                        tasks.remove();
+                    }
+                }
+            } catch (IOException ex) {
+                log().error("Could not check the Octopus deployment tasks, trying again: " + ex.getMessage());
+            } catch (Exception ex) {
+                getContext().onFailure(ex);
+                return;
+            }
+
+            if (remaining.isEmpty()) {
+                finish();
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                timedOut();
+                return;
+            }
+            pollInterval = Math.min(MAX_POLL_INTERVAL_MILLIS, pollInterval * 3 / 2);
+            schedule(Math.min(pollInterval, deadline - now));
+        }
+
+        private void finish() {
+            forgetWaitedTasks();
+            if (failed) {
+                getContext().onFailure(new AbortException("An Octopus deployment did not succeed"));
+            } else {
+                getContext().onSuccess(null);
+            }
+        }
+
+        private void timedOut() {
+            log().error(String.format("Octopus deployment tasks %s did not complete within %s.", remaining, timeout));
+            if (step.cancelOnTimeout) {
+                for (DeploymentTask deploymentTask : remaining) {
+                    try {
+                        log().info(String.format("Cancelling deployment task %s.", deploymentTask));
+                        OctopusDeployPlugin.getOctopusDeployServer(deploymentTask.getServerId()).getApi()
+                                .forSpace(deploymentTask.getSpaceId()).getTasksApi().cancelTask(deploymentTask.getTaskId());
+                    } catch (IOException ex) {
+                        log().error(String.format("Could not cancel deployment task %s: %s", deploymentTask, ex.getMessage()));
+                    }
+                }
+            }
+            waited.addAll(remaining);
+            forgetWaitedTasks();
+            getContext().onFailure(new AbortException("Timed out waiting for Octopus deployments"));
+        }
+
+        private void forgetWaitedTasks() {
+            try {
+                Run<?, ?> run = getContext().get(Run.class);
+                OctopusDeploymentTasks tasks = run.getAction(OctopusDeploymentTasks.class);
+                if (tasks != null) {
+                    tasks.waited(waited);
+                    run.save();
+                }
+            } catch (IOException | InterruptedException ex) {
+                log().error("Could not save the Octopus deployment tasks: " + ex.getMessage());
+            }
+        }
+
+        private Log log() {
+            try {
+                return new Log(new BuildListenerAdapter(getContext().get(TaskListener.class)));
+            } catch (IOException | InterruptedException ex) {
+                return new Log(new BuildListenerAdapter(TaskListener.NULL));
+            }
+        }
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends StepDescriptor {
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return new HashSet<>(Arrays.asList(Run.class, TaskListener.class));
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "octopusWaitForDeployment";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Wait for Octopus Deploy deployments";
+        }
+    }
+}
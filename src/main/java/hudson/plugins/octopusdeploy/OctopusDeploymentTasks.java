@@ -0,0 +1,122 @@
+package hudson.plugins.octopusdeploy;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The Octopus server tasks running deployments started by a build, so that a later step can wait for them
+ * without having to be told their ids. Saved with the build, so waiting can carry on after a restart.
+ * Steps that started deployments without reporting their tasks, as the legacy Octopus CLI does, are counted, so a
+ * later wait does not mistake them for there being nothing to wait for.
+ */
+public class OctopusDeploymentTasks extends InvisibleAction {
+    private final List<DeploymentTask> pending = new ArrayList<>();
+    private int untracked;
+
+    /**
+     * Record the deployment tasks a step has started.
+     * @param run the build
+     * @param serverId the id of the Octopus server the tasks run on
+     * @param spaceId the space the tasks run in, may be blank
+     * @param taskIds the ids of the tasks, empty if the step started deployments without reporting their tasks
+     * @throws IOException if the build cannot be saved
+     */
+    public static void record(Run<?, ?> run, String serverId, String spaceId, List<String> taskIds) throws IOException {
+        OctopusDeploymentTasks tasks;
+        synchronized (run) {
+            tasks = run.getAction(OctopusDeploymentTasks.class);
+            if (tasks == null) {
+                tasks = new OctopusDeploymentTasks();
+                run.addAction(tasks);
+            }
+        }
+        tasks.add(serverId, spaceId, taskIds);
+        run.save();
+    }
+
+    private synchronized void add(String serverId, String spaceId, List<String> taskIds) {
+        if (taskIds.isEmpty()) {
+            untracked++;
+        }
+        for (String taskId : taskIds) {
+            pending.add(new DeploymentTask(serverId, spaceId, taskId));
+        }
+    }
+
+    /**
+     * @return the recorded tasks that have not yet been waited for
+     */
+    public synchronized List<DeploymentTask> getPending() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * @return the number of steps that started deployments without reporting their tasks since a step last waited
+     */
+    public synchronized int getUntracked() {
+        return untracked;
+    }
+
+    /**
+     * Forget tasks that have been waited for, and the steps whose deployments could not be waited for.
+     * @param tasks the tasks to forget
+     */
+    public synchronized void waited(List<DeploymentTask> tasks) {
+        pending.removeAll(tasks);
+        untracked = 0;
+    }
+
+    /**
+     * A server task on an Octopus server.
+     */
+    public static final class DeploymentTask implements Serializable {
+        private static final long serialVersionUID = 1;
+
+        private final String serverId;
+        public String getServerId() {
+            return serverId;
+        }
+
+        private final String spaceId;
+        public String getSpaceId() {
+            return spaceId;
+        }
+
+        private final String taskId;
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public DeploymentTask(String serverId, String spaceId, String taskId) {
+            this.serverId = serverId;
+            this.spaceId = spaceId;
+            this.taskId = taskId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DeploymentTask)) return false;
+            DeploymentTask other = (DeploymentTask) o;
+            return Objects.equals(serverId, other.serverId)
+                    && Objects.equals(spaceId, other.spaceId)
+                    && Objects.equals(taskId, other.taskId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverId, spaceId, taskId);
+        }
+
+        @Override
+        public String toString() {
+            return taskId;
+        }
+    }
+}
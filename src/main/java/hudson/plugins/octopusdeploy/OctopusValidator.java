@@ -1,16 +1,13 @@
 package hudson.plugins.octopusdeploy;
 
 import com.octopusdeploy.api.data.Project;
-import com.octopusdeploy.api.data.Release;
 import com.octopusdeploy.api.*;
+import hudson.plugins.octopusdeploy.cli.TimeSpans;
 import hudson.util.FormValidation;
 
 import java.io.File;
 import java.io.IOException;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Validations on input for Octopus Deploy.
@@ -139,15 +136,7 @@ public class OctopusValidator {
             return FormValidation.error("Please provide a release version.");
         }
         try {
-            Set<Release> releases = api.getReleasesApi().getReleasesForProject(project.getId());
-
-            boolean found = false;
-            for (Release release : releases) {
-                if (releaseVersion.equals(release.getVersion()) ) {
-                    found = true;
-                    break;
-                }
-            }
+            boolean found = api.getReleasesApi().releaseExists(project.getId(), releaseVersion);
             if (found && existenceCheckReq == ReleaseExistenceRequirement.MustNotExist) {
                 return FormValidation.error("Release %s already exists for project '%s'!", releaseVersion, project.getName());
             }
@@ -210,13 +199,7 @@ public class OctopusValidator {
 
     public static Boolean isValidTimeSpan(String deploymentTimeout)
     {
-        try {
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("HH:mm:ss");
-            dtf.parse(deploymentTimeout);
-        } catch (DateTimeParseException ex) {
-            return false;
-        }
-        return true;
+        return TimeSpans.isValid(deploymentTimeout);
     }
 
     public static Boolean isValidDirectory(String path) {
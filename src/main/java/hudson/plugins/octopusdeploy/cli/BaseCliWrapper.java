@@ -1,5 +1,6 @@
 package hudson.plugins.octopusdeploy.cli;
 
+import com.octopusdeploy.api.RequestThrottle;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
@@ -14,9 +15,7 @@ import jenkins.util.BuildListenerAdapter;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -41,6 +40,7 @@ public abstract class BaseCliWrapper implements OctopusCliExecutor {
     protected final String projectName;
     protected final boolean verboseLogging;
     protected final boolean ignoreSslErrors;
+    private RequestThrottle throttle = RequestThrottle.UNLIMITED;
 
     protected BaseCliWrapper(String toolId, FilePath workspace, Launcher launcher,
                             EnvVars environment, TaskListener listener,
@@ -59,6 +59,15 @@ public abstract class BaseCliWrapper implements OctopusCliExecutor {
         this.ignoreSslErrors = ignoreSslErrors;
     }
 
+    /**
+     * Launch commands at no more than the server's request rate, shared with its REST requests. A command does not
+     * take a place among the requests in flight, as it may run for as long as a deployment or an upload takes.
+     * @param throttle the server's throttle
+     */
+    void throttle(RequestThrottle throttle) {
+        this.throttle = throttle;
+    }
+
     protected CliExecutionResult execute(List<String> args, Set<Integer> maskedIndices)
             throws IOException, InterruptedException {
 
@@ -87,8 +96,8 @@ public abstract class BaseCliWrapper implements OctopusCliExecutor {
         // Build mask array
         boolean[] masks = buildMaskArray(cmdArgs.size(), maskedIndices);
 
-        // Capture stdout
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        // Copy stdout to the build log as it arrives, keeping the end of it to read the result from
+        CliOutput output = new CliOutput(listener.getLogger(), CliOutput.DEFAULT_MAX_TAIL_BYTES);
 
         // Launch process
         environment.put("OCTOEXTENSION", "");
@@ -104,27 +113,31 @@ public abstract class BaseCliWrapper implements OctopusCliExecutor {
             environment.put("OCTOPUS_SPACE", spaceId);
         }
         
-        Proc process = launcher.launch()
-                .cmds(cmdArgs)
-                .masks(masks)
-                .stdout(outputStream)
-                .envs(environment)
-                .pwd(workspace)
-                .start();
-
-        int exitCode = process.join();
-
-        String stdout = outputStream.toString(StandardCharsets.UTF_8.name());
+        int exitCode;
+        throttle.awaitTurn();
+        try (CliOutput stdout = output) {
+            Proc process = launcher.launch()
+                    .cmds(cmdArgs)
+                    .masks(masks)
+                    .stdout(stdout)
+                    .envs(environment)
+                    .pwd(workspace)
+                    .start();
+
+            exitCode = process.join();
+        }
 
-        // Log output to build listener for visibility
-        listener.getLogger().print(stdout);
+        if (output.isTruncated()) {
+            log.info(String.format("Only the last %d bytes of the Octopus CLI output were kept to read its result from",
+                    CliOutput.DEFAULT_MAX_TAIL_BYTES));
+        }
         log.info(String.format("Octopus CLI exit code: %d", exitCode));
 
         if (exitCode != 0) {
             log.error("Octopus CLI command failed. Please check the build log for details on the error.");
         }
 
-        return new CliExecutionResult(stdout, exitCode);
+        return new CliExecutionResult(output.getTail(), exitCode);
     }
 
     /**
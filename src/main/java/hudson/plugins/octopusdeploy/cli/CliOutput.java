@@ -0,0 +1,67 @@
+package hudson.plugins.octopusdeploy.cli;
+
+import hudson.console.LineTransformationOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * The standard output of a CLI command: each line is copied to the build log as soon as it is complete, and only
+ * the last lines, up to a bounded size, are kept for reading the result of the command, such as its JSON output.
+ */
+final class CliOutput extends LineTransformationOutputStream {
+    static final int DEFAULT_MAX_TAIL_BYTES = 1024 * 1024;
+
+    private final PrintStream log;
+    private final int maxTailBytes;
+    private final Deque<byte[]> tail = new ArrayDeque<>();
+    private int tailBytes;
+    private boolean truncated;
+
+    /**
+     * @param log the build log the output is copied to
+     * @param maxTailBytes how much of the end of the output to keep
+     */
+    CliOutput(PrintStream log, int maxTailBytes) {
+        this.log = log;
+        this.maxTailBytes = maxTailBytes;
+    }
+
+    @Override
+    protected void eol(byte[] b, int len) throws IOException {
+        log.write(b, 0, len);
+        log.flush();
+
+        tail.addLast(Arrays.copyOf(b, len));
+        tailBytes += len;
+        while (tailBytes > maxTailBytes && tail.size() > 1) {
+            tailBytes -= tail.removeFirst().length;
+            truncated = true;
+        }
+    }
+
+    /**
+     * Returns whether lines from the start of the output were dropped to keep within the bound.
+     * @return true if {@link #getTail()} is not the whole output
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Returns the end of the output. Call {@link #close()} first, so a last line without a line break is included.
+     * @return the kept lines, with their line breaks
+     */
+    String getTail() {
+        ByteArrayOutputStream text = new ByteArrayOutputStream(tailBytes);
+        for (byte[] line : tail) {
+            text.write(line, 0, line.length);
+        }
+        return new String(text.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
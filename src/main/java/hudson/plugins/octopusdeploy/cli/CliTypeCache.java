@@ -0,0 +1,87 @@
+package hudson.plugins.octopusdeploy.cli;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers which flavour of Octopus CLI was found at a tool path on a node, so the probe process
+ * is only launched once per node and tool rather than once per build step.
+ * An entry is only reused while the tool binary's fingerprint (its modification time, where the file can be seen)
+ * is unchanged, and the whole cache is cleared when the Octopus CLI tool installations are reconfigured.
+ * Only a probe that succeeded, or one that failed with the legacy CLI's answer to an unknown command, is remembered;
+ * any other failure may be transient, so the next build step probes again.
+ */
+public final class CliTypeCache {
+    private static final Map<Key, Detected> DETECTED = new ConcurrentHashMap<>();
+    private static final Pattern LEGACY_UNKNOWN_COMMAND = Pattern.compile(
+            "(?i)(command\\W+config\\W+(is\\s+)?not\\s+(supported|recogni[sz]ed|found))"
+                    + "|(unrecogni[sz]ed|unknown)\\s+command"
+                    + "|usage:\\s+octo(\\.exe)?\\s+<command>");
+
+    private CliTypeCache() {
+    }
+
+    static CliType get(String nodeName, String cliPath, long fingerprint) {
+        Detected detected = DETECTED.get(new Key(nodeName, cliPath));
+        if (detected == null || detected.fingerprint != fingerprint) {
+            return null;
+        }
+        return detected.type;
+    }
+
+    static void put(String nodeName, String cliPath, long fingerprint, CliType type) {
+        DETECTED.put(new Key(nodeName, cliPath), new Detected(type, fingerprint));
+    }
+
+    /**
+     * Returns whether the output of a failed probe is the legacy .NET CLI rejecting the config command, as opposed
+     * to a failure that says nothing about which CLI is installed, such as the process being killed.
+     * @param probeOutput what the probe wrote to standard output and standard error
+     * @return true if the failure identifies the legacy CLI
+     */
+    static boolean isLegacySignature(String probeOutput) {
+        return probeOutput != null && LEGACY_UNKNOWN_COMMAND.matcher(probeOutput).find();
+    }
+
+    /**
+     * Forget every detected CLI type, so the next build step on each node probes its tool again.
+     */
+    public static void invalidateAll() {
+        DETECTED.clear();
+    }
+
+    private static final class Detected {
+        private final CliType type;
+        private final long fingerprint;
+
+        private Detected(CliType type, long fingerprint) {
+            this.type = type;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final class Key {
+        private final String nodeName;
+        private final String cliPath;
+
+        private Key(String nodeName, String cliPath) {
+            this.nodeName = nodeName;
+            this.cliPath = cliPath;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return nodeName.equals(other.nodeName) && Objects.equals(cliPath, other.cliPath);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nodeName, cliPath);
+        }
+    }
+}
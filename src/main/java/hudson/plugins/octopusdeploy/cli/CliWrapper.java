@@ -13,7 +13,6 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.tools.ant.types.Commandline;
 
 import java.io.IOException;
-import java.time.LocalTime;
 import java.util.*;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -23,6 +22,11 @@ import static com.google.common.base.Preconditions.checkState;
  * Supports the new CLI from https://github.com/OctopusDeploy/cli
  */
 public class CliWrapper extends BaseCliWrapper {
+    private boolean loggedIn;
+    private final List<String> deploymentTaskIds = new ArrayList<>();
+    private String createdReleaseVersion;
+    private String createdReleaseId;
+
     /**
      * Package-private constructor - use OctopusCliWrapperBuilder to create
      * instances
@@ -94,7 +98,7 @@ public class CliWrapper extends BaseCliWrapper {
     @Override
     public Result push(List<String> packagePaths, String overwriteMode, String additionalArgs)
             throws IOException, InterruptedException {
-        Result loginRes = login();
+        Result loginRes = ensureLoggedIn();
         if (loginRes != Result.SUCCESS) {
             return loginRes;
         }
@@ -134,7 +138,7 @@ public class CliWrapper extends BaseCliWrapper {
             String filePath, String overwriteMode,
             String additionalArgs)
             throws IOException, InterruptedException {
-        Result loginRes = login();
+        Result loginRes = ensureLoggedIn();
         if (loginRes != Result.SUCCESS) {
             return loginRes;
         }
@@ -185,7 +189,7 @@ public class CliWrapper extends BaseCliWrapper {
             boolean waitForDeployment, String deploymentTimeout,
             boolean cancelOnTimeout, String additionalArgs)
             throws IOException, InterruptedException {
-        Result loginRes = login();
+        Result loginRes = ensureLoggedIn();
         if (loginRes != Result.SUCCESS) {
             return loginRes;
         }
@@ -237,11 +241,12 @@ public class CliWrapper extends BaseCliWrapper {
             return deployResult.toResult();
         }
 
+        List<String> taskIds = readServerTaskIds(deployResult.getStdout());
+        deploymentTaskIds.addAll(taskIds);
+
         if (waitForDeployment) {
-            String stdout = deployResult.getStdout();
-            JSONArray json = (JSONArray) JSONSerializer.toJSON(stdout);
-            String taskId = json.getJSONObject(0).getString("ServerTaskId");
-            return waitForDeployment(taskId, deploymentTimeout, cancelOnTimeout);
+            checkState(!taskIds.isEmpty(), "The deployment output did not include a server task to wait for");
+            return waitForDeployment(taskIds.get(0), deploymentTimeout, cancelOnTimeout);
         }
 
         return deployResult.toResult();
@@ -256,7 +261,7 @@ public class CliWrapper extends BaseCliWrapper {
             String deploymentTimeout, boolean cancelOnTimeout,
             String additionalArgs)
             throws IOException, InterruptedException {
-        Result loginRes = login();
+        Result loginRes = ensureLoggedIn();
         if (loginRes != Result.SUCCESS) {
             return loginRes;
         }
@@ -318,6 +323,9 @@ public class CliWrapper extends BaseCliWrapper {
             return createResult.toResult();
         }
 
+        createdReleaseVersion = StringUtils.isNotBlank(version) ? version : readReleaseField(createResult.getStdout(), "Version");
+        createdReleaseId = readReleaseField(createResult.getStdout(), "Id");
+
         if (StringUtils.isNotBlank(deployToEnvironment)) {
             if (StringUtils.isBlank(version)) {
                 String stdout = createResult.getStdout();
@@ -333,6 +341,24 @@ public class CliWrapper extends BaseCliWrapper {
         return Result.SUCCESS;
     }
 
+    /**
+     * Log in, when the CLI needs it, unless this wrapper already has. Every command is given the server, API key and
+     * space in OCTOPUS_URL, OCTOPUS_API_KEY and OCTOPUS_SPACE, so no login is needed unless SSL errors are ignored,
+     * which only the login can tell the CLI. That login is not shared with other wrappers, even of the same build:
+     * the CLI keeps it in one configuration file per user on the node, which another build may have pointed at a
+     * different server since.
+     */
+    private Result ensureLoggedIn() throws IOException, InterruptedException {
+        if (loggedIn || !ignoreSslErrors) {
+            return Result.SUCCESS;
+        }
+        Result result = login();
+        if (result == Result.SUCCESS) {
+            loggedIn = true;
+        }
+        return result;
+    }
+
     private Result login() throws IOException, InterruptedException {
         List<String> args = new ArrayList<>();
         Set<Integer> maskedIndices = new HashSet<>();
@@ -380,9 +406,8 @@ public class CliWrapper extends BaseCliWrapper {
         args.add("--progress");
 
         if (StringUtils.isNotBlank(deploymentTimeout)) {
-            LocalTime time = LocalTime.parse(deploymentTimeout);
             args.add("--timeout");
-            args.add(String.valueOf(time.toSecondOfDay()));
+            args.add(String.valueOf(TimeSpans.parse(deploymentTimeout).getSeconds()));
         }
 
         if (cancelOnTimeout) {
@@ -401,6 +426,48 @@ public class CliWrapper extends BaseCliWrapper {
         return watchResult.toResult();
     }
 
+    @Override
+    public List<String> getDeploymentTaskIds() {
+        return Collections.unmodifiableList(deploymentTaskIds);
+    }
+
+    @Override
+    public String getCreatedReleaseVersion() {
+        return createdReleaseVersion;
+    }
+
+    @Override
+    public String getCreatedReleaseId() {
+        return createdReleaseId;
+    }
+
+    /**
+     * Read a field from the JSON output of a release creation, or null if the output is not JSON or has no such field.
+     */
+    private static String readReleaseField(String stdout, String name) {
+        try {
+            return ((JSONObject) JSONSerializer.toJSON(stdout)).optString(name, null);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the ids of the server tasks from the JSON output of a deployment, or none if the output is not JSON.
+     */
+    private static List<String> readServerTaskIds(String stdout) {
+        List<String> taskIds = new ArrayList<>();
+        try {
+            JSONArray json = (JSONArray) JSONSerializer.toJSON(stdout);
+            for (int i = 0; i < json.size(); i++) {
+                taskIds.add(json.getJSONObject(i).getString("ServerTaskId"));
+            }
+        } catch (RuntimeException ex) {
+            // Output without task ids, there is nothing to wait for or report
+        }
+        return taskIds;
+    }
+
     /**
      * Add common arguments to the command
      */
@@ -3,6 +3,7 @@ package hudson.plugins.octopusdeploy.cli;
 import hudson.model.Result;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -37,4 +38,28 @@ public interface OctopusCliExecutor {
                         String deploymentTimeout, boolean cancelOnTimeout,
                         String additionalArgs)
             throws IOException, InterruptedException;
+
+    /**
+     * The ids of the server tasks running the deployments this executor has started.
+     * @return the task ids, in the order the deployments were started
+     */
+    default List<String> getDeploymentTaskIds() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * The version of the release this executor last created.
+     * @return the version, or null if no release was created or its version is not known
+     */
+    default String getCreatedReleaseVersion() {
+        return null;
+    }
+
+    /**
+     * The id of the release this executor last created.
+     * @return the id, or null if no release was created or its id is not known
+     */
+    default String getCreatedReleaseId() {
+        return null;
+    }
 }
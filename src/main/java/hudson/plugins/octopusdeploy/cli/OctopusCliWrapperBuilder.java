@@ -1,5 +1,7 @@
 package hudson.plugins.octopusdeploy.cli;
 
+import com.octopusdeploy.api.OctopusApi;
+import com.octopusdeploy.api.PooledHttpTransport;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
@@ -12,7 +14,9 @@ import hudson.plugins.octopusdeploy.OctoInstallation;
 import hudson.plugins.octopusdeploy.constants.OctoConstants;
 import org.apache.commons.lang.StringUtils;
 import java.util.*;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import static com.google.common.base.Preconditions.checkState;
 
@@ -35,6 +39,8 @@ public class OctopusCliWrapperBuilder {
     private String projectName;
     private boolean verboseLogging;
     private boolean ignoreSslErrors;
+    private OctopusDeployServer server;
+    private String releaseEngine;
 
     public OctopusCliWrapperBuilder(String toolId, FilePath workspace, Launcher launcher,
             EnvVars environment, TaskListener listener) {
@@ -59,6 +65,7 @@ public class OctopusCliWrapperBuilder {
         this.serverUrl = serverUrl;
         this.apiKey = apiKey;
         this.ignoreSslErrors = ignoreSslErrors;
+        this.server = server;
         return this;
     }
 
@@ -92,7 +99,26 @@ public class OctopusCliWrapperBuilder {
         return this;
     }
 
+    /**
+     * Choose how releases are created and deployed.
+     * @param releaseEngine the name of a {@link ReleaseEngine}, or blank to use the server's setting
+     * @return this builder
+     */
+    public OctopusCliWrapperBuilder releaseEngine(String releaseEngine) {
+        this.releaseEngine = releaseEngine;
+        return this;
+    }
+
     public OctopusCliExecutor build() {
+        if (getReleaseEngine() == ReleaseEngine.REST_API) {
+            OctopusApi api = server != null ? server.getApi() : new OctopusApi(serverUrl, apiKey, new PooledHttpTransport(
+                    PooledHttpTransport.DEFAULT_POOL_SIZE, PooledHttpTransport.DEFAULT_IDLE_TIMEOUT, false, ignoreSslErrors));
+            return new RestApiExecutor(api.forSpace(spaceId), projectName, listener, this::buildCliExecutor);
+        }
+        return buildCliExecutor();
+    }
+
+    private OctopusCliExecutor buildCliExecutor() {
         CliType t;
         try {
             t = inferCliType();
@@ -100,16 +126,23 @@ public class OctopusCliWrapperBuilder {
             throw new IllegalStateException("Failed infering Octopus CLI type", e);
         }
 
+        BaseCliWrapper wrapper;
         switch (t) {
             case Current:
-                return new CliWrapper(toolId, workspace, launcher, environment, listener,
+                wrapper = new CliWrapper(toolId, workspace, launcher, environment, listener,
                     serverUrl, apiKey, spaceId, projectName, verboseLogging, ignoreSslErrors);
+                break;
             case Legacy:
-                return new LegacyCliWrapper(toolId, workspace, launcher, environment, listener,
+                wrapper = new LegacyCliWrapper(toolId, workspace, launcher, environment, listener,
                     serverUrl, apiKey, spaceId, projectName, verboseLogging, ignoreSslErrors);
+                break;
             default:
                 throw new IllegalStateException("Unexpected CLI type: " + t);
         }
+        if (server != null) {
+            wrapper.throttle(server.getThrottle());
+        }
+        return wrapper;
     }
 
     // Package-private getters for wrapper constructors
@@ -157,23 +190,52 @@ public class OctopusCliWrapperBuilder {
         return ignoreSslErrors;
     }
 
+    ReleaseEngine getReleaseEngine() {
+        if (StringUtils.isNotBlank(releaseEngine)) {
+            return ReleaseEngine.valueOf(releaseEngine);
+        }
+        return server != null ? server.getReleaseEngine() : ReleaseEngine.CLI;
+    }
+
     private CliType inferCliType() throws IOException, InterruptedException {
         Node builtOn = workspace.toComputer().getNode();
         String cliPath = OctoInstallation.getOctopusToolPath(toolId, builtOn, environment, listener);
+        String nodeName = builtOn == null ? "" : builtOn.getNodeName();
+        long fingerprint = fingerprintOf(cliPath);
+        CliType cached = CliTypeCache.get(nodeName, cliPath, fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+
         List<String> cmdArgs = new ArrayList<>();
         cmdArgs.add(cliPath);
         cmdArgs.add("config");
         cmdArgs.add("list");
 
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
         Proc process = launcher.launch()
                 .cmds(cmdArgs)
+                .stdout(output)
+                .stderr(output)
                 .start();
 
         int exitCode = process.join();
         if (exitCode == 0) {
+            CliTypeCache.put(nodeName, cliPath, fingerprint, CliType.Current);
             return CliType.Current;
-        } else {
-            return CliType.Legacy;
         }
+        if (CliTypeCache.isLegacySignature(output.toString(StandardCharsets.UTF_8.name()))) {
+            CliTypeCache.put(nodeName, cliPath, fingerprint, CliType.Legacy);
+        }
+        return CliType.Legacy;
+    }
+
+    /**
+     * The modification time of the tool binary on the node, or 0 when the path cannot be resolved to a file
+     * (for example a bare command name found on the PATH).
+     */
+    private long fingerprintOf(String cliPath) throws IOException, InterruptedException {
+        FilePath tool = new FilePath(workspace.getChannel(), cliPath);
+        return tool.exists() ? tool.lastModified() : 0;
     }
 }
@@ -0,0 +1,19 @@
+package hudson.plugins.octopusdeploy.cli;
+
+/**
+ * How releases are created and deployed.
+ */
+public enum ReleaseEngine {
+    CLI("Octopus CLI"), // launch the configured Octopus CLI tool
+    REST_API("Octopus REST API"); // call the Octopus REST API directly from Jenkins
+
+    private final String displayName;
+
+    ReleaseEngine(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,374 @@
+package hudson.plugins.octopusdeploy.cli;
+
+import com.octopusdeploy.api.OctopusApi;
+import com.octopusdeploy.api.data.Channel;
+import com.octopusdeploy.api.data.Deployment;
+import com.octopusdeploy.api.data.DeploymentProcessTemplate;
+import com.octopusdeploy.api.data.Environment;
+import com.octopusdeploy.api.data.Project;
+import com.octopusdeploy.api.data.Release;
+import com.octopusdeploy.api.data.SelectedPackage;
+import com.octopusdeploy.api.data.Task;
+import com.octopusdeploy.api.data.Tenant;
+import com.octopusdeploy.api.data.Variable;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.plugins.octopusdeploy.Log;
+import hudson.plugins.octopusdeploy.constants.OctoConstants;
+import jenkins.util.BuildListenerAdapter;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Creates and deploys releases by calling the Octopus REST API directly, rather than launching the Octopus CLI.
+ * Packing and pushing, and any release option the API path does not handle (git references, tenant tags,
+ * additional CLI arguments, or packages whose version would have to be looked up in a feed), are handed to the CLI.
+ */
+public class RestApiExecutor implements OctopusCliExecutor {
+    public static final Duration DEFAULT_DEPLOYMENT_TIMEOUT = Duration.ofMinutes(10);
+    static final Duration TASK_POLL_INTERVAL = Duration.ofSeconds(5);
+
+    /**
+     * How long to wait between checks of a deployment task; not final so that tests need not wait for it.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    static long taskPollIntervalMillis = TASK_POLL_INTERVAL.toMillis();
+
+    private final OctopusApi api;
+    private final String projectName;
+    private final TaskListener listener;
+    private final Supplier<OctopusCliExecutor> cli;
+    private OctopusCliExecutor cliExecutor;
+    private final List<String> deploymentTaskIds = new ArrayList<>();
+    private String createdReleaseVersion;
+    private String createdReleaseId;
+
+    /**
+     * @param api the API for the space to create and deploy releases in
+     * @param projectName the name of the project
+     * @param listener the listener to log progress to
+     * @param cli creates the CLI executor that everything the API path does not handle is handed to;
+     *            only called when it is needed
+     */
+    public RestApiExecutor(OctopusApi api, String projectName, TaskListener listener, Supplier<OctopusCliExecutor> cli) {
+        this.api = api;
+        this.projectName = projectName;
+        this.listener = listener;
+        this.cli = cli;
+    }
+
+    @Override
+    public Result pack(String packageId, String packageVersion, String format,
+            String sourcePath, List<String> includePaths, String outputPath,
+            boolean overwriteExisting, String additionalArgs)
+            throws IOException, InterruptedException {
+        return cli().pack(packageId, packageVersion, format, sourcePath, includePaths, outputPath,
+                overwriteExisting, additionalArgs);
+    }
+
+    @Override
+    public Result push(List<String> packagePaths, String overwriteMode, String additionalArgs)
+            throws IOException, InterruptedException {
+        return cli().push(packagePaths, overwriteMode, additionalArgs);
+    }
+
+    @Override
+    public Result pushBuildInformation(List<String> packageIds, String version,
+            String filePath, String overwriteMode, String additionalArgs)
+            throws IOException, InterruptedException {
+        return cli().pushBuildInformation(packageIds, version, filePath, overwriteMode, additionalArgs);
+    }
+
+    @Override
+    public Result deployRelease(String version, String environment, String tenant,
+            String tenantTag, List<String> variables,
+            boolean waitForDeployment, String deploymentTimeout,
+            boolean cancelOnTimeout, String additionalArgs)
+            throws IOException, InterruptedException {
+        if (StringUtils.isNotBlank(tenantTag) || StringUtils.isNotBlank(additionalArgs)) {
+            log().info("Tenant tags and additional arguments are not supported by the REST API, deploying with the Octopus CLI.");
+            return cli().deployRelease(version, environment, tenant, tenantTag, variables,
+                    waitForDeployment, deploymentTimeout, cancelOnTimeout, additionalArgs);
+        }
+        checkState(StringUtils.isNotBlank(version),
+                String.format(OctoConstants.Errors.INPUT_CANNOT_BE_BLANK_MESSAGE_FORMAT, "Version"));
+
+        Project project = findProject();
+        if (project == null) {
+            return Result.FAILURE;
+        }
+        Release release = api.getReleasesApi().getRelease(project.getId(), version);
+        return deploy(release, environment, tenant, variables, waitForDeployment, deploymentTimeout, cancelOnTimeout);
+    }
+
+    @Override
+    public Result createRelease(String version, String channel, String releaseNotes,
+            String defaultPackageVersion, List<String> packages,
+            String gitRef, String gitCommit,
+            String deployToEnvironment, String tenant, String tenantTag,
+            List<String> variables, boolean waitForDeployment,
+            String deploymentTimeout, boolean cancelOnTimeout,
+            String additionalArgs)
+            throws IOException, InterruptedException {
+        if (StringUtils.isNotBlank(gitRef) || StringUtils.isNotBlank(gitCommit)
+                || StringUtils.isNotBlank(tenantTag) || StringUtils.isNotBlank(additionalArgs)) {
+            log().info("Git references, tenant tags and additional arguments are not supported by the REST API, creating the release with the Octopus CLI.");
+            return createReleaseWithCli(version, channel, releaseNotes, defaultPackageVersion, packages, gitRef, gitCommit,
+                    deployToEnvironment, tenant, tenantTag, variables, waitForDeployment, deploymentTimeout,
+                    cancelOnTimeout, additionalArgs);
+        }
+
+        Project project = findProject();
+        if (project == null) {
+            return Result.FAILURE;
+        }
+        Channel selectedChannel = findChannel(project, channel);
+        if (selectedChannel == null) {
+            return Result.FAILURE;
+        }
+
+        DeploymentProcessTemplate template = api.getDeploymentsApi()
+                .getDeploymentProcessTemplateForProject(project.getId(), selectedChannel.getId());
+        List<SelectedPackage> selectedPackages = selectPackages(template.getSteps(), packages, defaultPackageVersion);
+        if (selectedPackages == null) {
+            log().info("Not every package has a version, creating the release with the Octopus CLI so it can look up the latest versions.");
+            return createReleaseWithCli(version, channel, releaseNotes, defaultPackageVersion, packages, gitRef, gitCommit,
+                    deployToEnvironment, tenant, tenantTag, variables, waitForDeployment, deploymentTimeout,
+                    cancelOnTimeout, additionalArgs);
+        }
+
+        String releaseVersion = StringUtils.isNotBlank(version) ? version : template.getNextVersionIncrement();
+        checkState(StringUtils.isNotBlank(releaseVersion),
+                String.format(OctoConstants.Errors.INPUT_CANNOT_BE_BLANK_MESSAGE_FORMAT, "Version"));
+
+        Release release = api.getReleasesApi().createRelease(project.getId(), selectedChannel.getId(),
+                releaseVersion, releaseNotes, selectedPackages);
+        log().info(String.format("Created release %s of %s in channel %s", release.getVersion(), project.getName(), selectedChannel.getName()));
+        createdReleaseVersion = release.getVersion();
+        createdReleaseId = release.getId();
+
+        if (StringUtils.isNotBlank(deployToEnvironment)) {
+            return deploy(release, deployToEnvironment, tenant, variables, waitForDeployment, deploymentTimeout, cancelOnTimeout);
+        }
+        return Result.SUCCESS;
+    }
+
+    private Result createReleaseWithCli(String version, String channel, String releaseNotes,
+            String defaultPackageVersion, List<String> packages,
+            String gitRef, String gitCommit,
+            String deployToEnvironment, String tenant, String tenantTag,
+            List<String> variables, boolean waitForDeployment,
+            String deploymentTimeout, boolean cancelOnTimeout,
+            String additionalArgs)
+            throws IOException, InterruptedException {
+        return cli().createRelease(version, channel, releaseNotes, defaultPackageVersion, packages, gitRef, gitCommit,
+                deployToEnvironment, tenant, tenantTag, variables, waitForDeployment, deploymentTimeout,
+                cancelOnTimeout, additionalArgs);
+    }
+
+    private Result deploy(Release release, String environmentName, String tenantName, List<String> variables,
+            boolean waitForDeployment, String deploymentTimeout, boolean cancelOnTimeout)
+            throws IOException, InterruptedException {
+        Environment environment = api.getEnvironmentsApi().getEnvironmentByName(environmentName, true);
+        if (environment == null) {
+            log().error(String.format("Environment '%s' was not found.", environmentName));
+            return Result.FAILURE;
+        }
+
+        String tenantId = null;
+        if (StringUtils.isNotBlank(tenantName)) {
+            Tenant tenant = api.getTenantsApi().getTenantByName(tenantName, true);
+            if (tenant == null) {
+                log().error(String.format("Tenant '%s' was not found.", tenantName));
+                return Result.FAILURE;
+            }
+            tenantId = tenant.getId();
+        }
+
+        Map<String, String> formValues = new HashMap<>();
+        if (variables != null && !variables.isEmpty()) {
+            Properties entryProperties = new Properties();
+            for (String variable : variables) {
+                int separator = variable.indexOf(':');
+                if (separator <= 0) {
+                    log().error(String.format("Variable '%s' is not in the form name:value.", variable));
+                    return Result.FAILURE;
+                }
+                entryProperties.setProperty(variable.substring(0, separator), variable.substring(separator + 1));
+            }
+            Set<String> unknown = new TreeSet<>(entryProperties.stringPropertyNames());
+            for (Variable variable : api.getVariablesApi().getVariablesByReleaseAndEnvironment(release.getId(), environment.getId(), entryProperties)) {
+                if (entryProperties.containsKey(variable.getName())) {
+                    formValues.put(variable.getId(), variable.getValue());
+                    unknown.remove(variable.getName());
+                }
+            }
+            if (!unknown.isEmpty()) {
+                log().error(String.format("Release %s has no prompted variables named %s to deploy to %s with.",
+                        release.getVersion(), unknown, environment.getName()));
+                return Result.FAILURE;
+            }
+        }
+
+        Deployment deployment = api.getDeploymentsApi().createDeployment(release.getId(), environment.getId(), tenantId, formValues);
+        log().info(String.format("Deploying release %s to %s (task %s)", release.getVersion(), environment.getName(), deployment.getTaskId()));
+        deploymentTaskIds.add(deployment.getTaskId());
+
+        if (waitForDeployment) {
+            return waitForTask(deployment.getTaskId(), deploymentTimeout, cancelOnTimeout);
+        }
+        return Result.SUCCESS;
+    }
+
+    private Result waitForTask(String taskId, String deploymentTimeout, boolean cancelOnTimeout)
+            throws IOException, InterruptedException {
+        Duration timeout = StringUtils.isNotBlank(deploymentTimeout)
+                ? TimeSpans.parse(deploymentTimeout)
+                : DEFAULT_DEPLOYMENT_TIMEOUT;
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        Task task = pollTask(taskId);
+        while (task == null || !task.getIsCompleted()) {
+            if (System.nanoTime() - deadline >= 0) {
+                log().error(String.format("Deployment task %s did not complete within %s.", taskId, timeout));
+                if (cancelOnTimeout) {
+                    log().info(String.format("Cancelling deployment task %s.", taskId));
+                    api.getTasksApi().cancelTask(taskId);
+                }
+                return Result.FAILURE;
+            }
+            Thread.sleep(taskPollIntervalMillis);
+            task = pollTask(taskId);
+        }
+
+        log().info(String.format("Deployment task %s finished: %s", taskId, task.getState()));
+        return "Success".equals(task.getState()) ? Result.SUCCESS : Result.FAILURE;
+    }
+
+    /**
+     * @return the task, or null when it could not be checked this time
+     */
+    private Task pollTask(String taskId) {
+        try {
+            return api.getTasksApi().getTask(taskId);
+        } catch (IOException ex) {
+            // The task carries on running on the server; check again on the next poll until the deadline.
+            log().error(String.format("Could not check deployment task %s, will retry: %s", taskId, ex.getMessage()));
+            return null;
+        }
+    }
+
+    private Project findProject() throws IOException {
+        Project project = api.getProjectsApi().getProjectByName(projectName, true);
+        if (project == null) {
+            log().error(String.format("Project '%s' was not found.", projectName));
+        }
+        return project;
+    }
+
+    private Channel findChannel(Project project, String channelName) throws IOException {
+        if (StringUtils.isNotBlank(channelName)) {
+            Channel channel = api.getChannelsApi().getChannelByName(project.getId(), channelName);
+            if (channel == null) {
+                log().error(String.format("Channel '%s' was not found in project '%s'.", channelName, project.getName()));
+            }
+            return channel;
+        }
+        for (Channel channel : api.getChannelsApi().getChannelsByProjectId(project.getId())) {
+            if (channel.getIsDefault()) {
+                return channel;
+            }
+        }
+        log().error(String.format("Project '%s' has no default channel.", project.getName()));
+        return null;
+    }
+
+    /**
+     * Choose a version for every package in the release template, from the packages given as
+     * {@code name:version} or {@code name:referenceName:version}, where the name is the step or package id,
+     * falling back to the default package version.
+     * @return the selected packages, or null if some package has no version
+     */
+    static List<SelectedPackage> selectPackages(Set<SelectedPackage> templatePackages, List<String> packages,
+            String defaultPackageVersion) {
+        List<String[]> entries = new ArrayList<>();
+        if (packages != null) {
+            for (String entry : packages) {
+                String[] parts = entry.split(":");
+                if (parts.length == 2) {
+                    entries.add(new String[] {parts[0], null, parts[1]});
+                } else if (parts.length == 3) {
+                    entries.add(parts);
+                }
+            }
+        }
+
+        List<SelectedPackage> selected = new ArrayList<>();
+        for (SelectedPackage templatePackage : templatePackages) {
+            String version = defaultPackageVersion;
+            for (String[] entry : entries) {
+                boolean nameMatches = entry[0].equals(templatePackage.getStepName())
+                        || entry[0].equals(templatePackage.getPackageId());
+                boolean referenceMatches = entry[1] == null
+                        || entry[1].equals(templatePackage.getPackageReferenceName());
+                if (nameMatches && referenceMatches) {
+                    version = entry[2];
+                    break;
+                }
+            }
+            if (StringUtils.isBlank(version)) {
+                return null;
+            }
+            selected.add(new SelectedPackage(templatePackage.getStepName(), templatePackage.getActionName(),
+                    templatePackage.getPackageId(), templatePackage.getPackageReferenceName(), version));
+        }
+        return selected;
+    }
+
+    @Override
+    public synchronized List<String> getDeploymentTaskIds() {
+        List<String> taskIds = new ArrayList<>(deploymentTaskIds);
+        if (cliExecutor != null) {
+            taskIds.addAll(cliExecutor.getDeploymentTaskIds());
+        }
+        return taskIds;
+    }
+
+    @Override
+    public synchronized String getCreatedReleaseVersion() {
+        if (createdReleaseVersion == null && cliExecutor != null) {
+            return cliExecutor.getCreatedReleaseVersion();
+        }
+        return createdReleaseVersion;
+    }
+
+    @Override
+    public synchronized String getCreatedReleaseId() {
+        if (createdReleaseId == null && cliExecutor != null) {
+            return cliExecutor.getCreatedReleaseId();
+        }
+        return createdReleaseId;
+    }
+
+    private synchronized OctopusCliExecutor cli() {
+        if (cliExecutor == null) {
+            cliExecutor = cli.get();
+        }
+        return cliExecutor;
+    }
+
+    private Log log() {
+        BuildListener buildListener = listener instanceof BuildListener
+                ? (BuildListener) listener
+                : new BuildListenerAdapter(listener);
+        return new Log(buildListener);
+    }
+}
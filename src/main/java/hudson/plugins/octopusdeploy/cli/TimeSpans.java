@@ -0,0 +1,59 @@
+package hudson.plugins.octopusdeploy.cli;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the .NET TimeSpan values that deployment timeouts are configured with, {@code [d.]hh:mm:ss[.fffffff]},
+ * the format the Octopus CLI has always accepted, so that "1.00:00:00" means a day whichever engine runs.
+ */
+public final class TimeSpans {
+    private static final Pattern TIME_SPAN =
+            Pattern.compile("(?:(\\d+)\\.)?(\\d{1,2}):(\\d{1,2}):(\\d{1,2})(?:\\.(\\d{1,7}))?");
+
+    private TimeSpans() {
+    }
+
+    /**
+     * Parses a TimeSpan.
+     * @param timeSpan the TimeSpan, such as "00:30:00" or "1.12:00:00"
+     * @return the duration it stands for
+     * @throws IllegalArgumentException if the value is not a TimeSpan
+     */
+    public static Duration parse(String timeSpan) {
+        Matcher matcher = TIME_SPAN.matcher(timeSpan.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a valid TimeSpan, expected [d.]hh:mm:ss: " + timeSpan);
+        }
+        int hours = Integer.parseInt(matcher.group(2));
+        int minutes = Integer.parseInt(matcher.group(3));
+        int seconds = Integer.parseInt(matcher.group(4));
+        if (hours > 23 || minutes > 59 || seconds > 59) {
+            throw new IllegalArgumentException("Not a valid TimeSpan, expected [d.]hh:mm:ss: " + timeSpan);
+        }
+        Duration duration = Duration.ofHours(hours).plusMinutes(minutes).plusSeconds(seconds);
+        if (matcher.group(1) != null) {
+            duration = duration.plusDays(Long.parseLong(matcher.group(1)));
+        }
+        if (matcher.group(5) != null) {
+            String fraction = (matcher.group(5) + "000000000").substring(0, 9);
+            duration = duration.plusNanos(Long.parseLong(fraction));
+        }
+        return duration;
+    }
+
+    /**
+     * Checks a TimeSpan without parsing it for use.
+     * @param timeSpan the value to check
+     * @return true when {@link #parse(String)} accepts the value
+     */
+    public static boolean isValid(String timeSpan) {
+        try {
+            parse(timeSpan);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.octopusdeploy.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class AuthenticatedWebClientTest {
+
+    @Test
+    public void getSendsApiKeyToSpaceScopedUrl() throws IOException {
+        RecordingTransport transport = new RecordingTransport(200, "{\"Id\":\"Projects-1\"}");
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport)
+                .forSpace("Spaces-1");
+
+        AuthenticatedWebClient.WebResponse response = client.get("projects/all");
+
+        assertThat(transport.method).isEqualTo("GET");
+        assertThat(transport.uri).isEqualTo(URI.create("https://octopus.example.com/api/Spaces-1/projects/all"));
+        assertThat(transport.headers).containsEntry("X-Octopus-ApiKey", "API-KEY123");
+        assertThat(transport.body).isNull();
+        assertThat(response.getCode()).isEqualTo(200);
+        assertThat(response.getContent()).isEqualTo("{\"Id\":\"Projects-1\"}");
+    }
+
+    @Test
+    public void forSpaceScopesANewClientWithoutChangingTheOriginal() throws IOException {
+        RecordingTransport transport = new RecordingTransport(200, "[]");
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+
+        client.forSpace("Spaces-2").get("projects/all");
+        assertThat(transport.uri).isEqualTo(URI.create("https://octopus.example.com/api/Spaces-2/projects/all"));
+
+        client.get("projects/all");
+        assertThat(transport.uri).isEqualTo(URI.create("https://octopus.example.com/api/projects/all"));
+        assertThat(client.getSpaceId()).isNull();
+        assertThat(client.forSpace(" ").getSpaceId()).isNull();
+    }
+
+    @Test
+    public void getEncodesQueryParameters() throws IOException {
+        RecordingTransport transport = new RecordingTransport(200, "[]");
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+
+        client.get("projects", Collections.singletonMap("name", "My Project"));
+
+        assertThat(transport.uri).isEqualTo(URI.create("https://octopus.example.com/api/projects?name=My+Project"));
+    }
+
+    @Test
+    public void postSendsFormEncodedBody() throws IOException {
+        RecordingTransport transport = new RecordingTransport(201, "{}");
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+        byte[] data = "a=b".getBytes(StandardCharsets.UTF_8);
+
+        AuthenticatedWebClient.WebResponse response = client.post("releases", data);
+
+        assertThat(transport.method).isEqualTo("POST");
+        assertThat(transport.headers).containsEntry("Content-Type", "application/x-www-form-urlencoded");
+        assertThat(transport.body).isEqualTo(data);
+        assertThat(response.getCode()).isEqualTo(201);
+    }
+
+    @Test
+    public void errorResponsesAreReturnedWithTheirContent() throws IOException {
+        RecordingTransport transport = new RecordingTransport(404, "{\"ErrorMessage\":\"Not found\"}");
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+
+        AuthenticatedWebClient.WebResponse response = client.get("projects/Projects-404");
+
+        assertThat(response.isErrorCode()).isTrue();
+        assertThat(response.getContent()).contains("Not found");
+    }
+
+    @Test
+    public void getDecodedReadsOnlyRequestedFields() throws IOException {
+        RecordingTransport transport = new RecordingTransport(200,
+                "[{\"Id\":\"Projects-1\",\"Name\":\"Web\",\"Links\":{\"Self\":\"/api/projects/Projects-1\"},\"IsDisabled\":false}]");
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+
+        List<Map<String, String>> projects = client.getDecoded("projects/all", json -> {
+            List<Map<String, String>> items = new ArrayList<>();
+            StreamingJson.readArray(json, reader -> StreamingJson.readFields(reader, "Id", "Name"), items);
+            return items;
+        });
+
+        assertThat(transport.method).isEqualTo("GET");
+        assertThat(projects).hasSize(1);
+        assertThat(projects.get(0)).containsOnly(entry("Id", "Projects-1"), entry("Name", "Web"));
+    }
+
+    @Test
+    public void getDecodedThrowsOnErrorResponse() {
+        RecordingTransport transport = new RecordingTransport(404, "{\"ErrorMessage\":\"Not found\"}");
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+
+        assertThatThrownBy(() -> client.getDecoded("projects/Projects-404", StreamingJson::readScalar))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Code 404")
+                .hasMessageContaining("Not found");
+    }
+
+    @Test
+    public void getDecodedConditionalReusesTheValueWhenNotModified() throws IOException {
+        List<Map<String, String>> sentHeaders = new ArrayList<>();
+        HttpTransport transport = new HttpTransport() {
+            @Override
+            public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+                sentHeaders.add(headers);
+                boolean notModified = "\"v1\"".equals(headers.get("If-None-Match"));
+                return handler.handle(notModified ? 304 : 200,
+                        Collections.singletonMap("ETag", Collections.singletonList("\"v1\"")),
+                        new ByteArrayInputStream((notModified ? "" : "[\"Web\"]").getBytes(StandardCharsets.UTF_8)));
+            }
+        };
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+        StreamingJson.Decoder<List<String>> decoder = json -> {
+            List<String> names = new ArrayList<>();
+            StreamingJson.readArray(json, StreamingJson::readScalar, names);
+            return names;
+        };
+
+        List<String> first = client.getDecodedConditional("projects/all", decoder);
+        List<String> second = client.forSpace("Spaces-1").forSpace(null).getDecodedConditional("projects/all", decoder);
+
+        assertThat(second).isSameAs(first).containsExactly("Web");
+        assertThat(sentHeaders.get(0)).doesNotContainKey("If-None-Match");
+        assertThat(sentHeaders.get(1)).containsEntry("If-None-Match", "\"v1\"");
+    }
+
+    @Test
+    public void getDecodedConditionalKeepsTheValuesOfDifferentDecodersApart() throws IOException {
+        HttpTransport transport = new HttpTransport() {
+            @Override
+            public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+                boolean notModified = "\"v1\"".equals(headers.get("If-None-Match"));
+                return handler.handle(notModified ? 304 : 200,
+                        Collections.singletonMap("ETag", Collections.singletonList("\"v1\"")),
+                        new ByteArrayInputStream((notModified ? "" : "[\"Web\"]").getBytes(StandardCharsets.UTF_8)));
+            }
+        };
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+
+        List<String> names = client.getDecodedConditional("projects/all", json -> {
+            List<String> decoded = new ArrayList<>();
+            StreamingJson.readArray(json, StreamingJson::readScalar, decoded);
+            return decoded;
+        });
+        Integer count = client.getDecodedConditional("projects/all", json -> {
+            List<String> decoded = new ArrayList<>();
+            StreamingJson.readArray(json, StreamingJson::readScalar, decoded);
+            return decoded.size();
+        });
+
+        assertThat(names).containsExactly("Web");
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    public void getDecodedConditionalKeepsOnlyTheMostRecentlyUsedValues() throws IOException {
+        List<Map<String, String>> sentHeaders = new ArrayList<>();
+        HttpTransport transport = new HttpTransport() {
+            @Override
+            public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+                sentHeaders.add(headers);
+                return handler.handle(200, Collections.singletonMap("ETag", Collections.singletonList("\"v1\"")),
+                        new ByteArrayInputStream("\"Web\"".getBytes(StandardCharsets.UTF_8)));
+            }
+        };
+        AuthenticatedWebClient client = new AuthenticatedWebClient("https://octopus.example.com", "API-KEY123", transport);
+        StreamingJson.Decoder<String> decoder = StreamingJson::readScalar;
+
+        for (int i = 0; i <= 64; i++) {
+            client.getDecodedConditional("projects/Projects-" + i, decoder);
+        }
+        client.getDecodedConditional("projects/Projects-64", decoder);
+        client.getDecodedConditional("projects/Projects-0", decoder);
+
+        assertThat(sentHeaders.get(65)).containsEntry("If-None-Match", "\"v1\"");
+        assertThat(sentHeaders.get(66)).doesNotContainKey("If-None-Match");
+    }
+
+    private static class RecordingTransport implements HttpTransport {
+        private final int code;
+        private final String content;
+
+        private String method;
+        private URI uri;
+        private Map<String, String> headers;
+        private byte[] body;
+
+        RecordingTransport(int code, String content) {
+            this.code = code;
+            this.content = content;
+        }
+
+        @Override
+        public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+            this.body = body;
+            return handler.handle(code, Collections.emptyMap(),
+                    new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
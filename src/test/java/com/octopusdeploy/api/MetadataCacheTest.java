@@ -0,0 +1,148 @@
+package com.octopusdeploy.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MetadataCacheTest {
+
+    @Test
+    public void freshEntriesAreServedWithoutReloading() throws IOException {
+        MetadataCache cache = new MetadataCache(Duration.ofHours(1), 10, Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("Spaces-1", "projects/all", loads::incrementAndGet);
+        Integer second = cache.get("Spaces-1", "projects/all", loads::incrementAndGet);
+
+        assertThat(second).isEqualTo(1);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    public void entriesAreKeyedBySpaceAndResource() throws IOException {
+        MetadataCache cache = new MetadataCache(Duration.ofHours(1), 10, Runnable::run);
+
+        cache.get("Spaces-1", "projects/all", () -> "space one projects");
+        cache.get("Spaces-2", "projects/all", () -> "space two projects");
+        cache.get("Spaces-1", "tenants/all", () -> "space one tenants");
+
+        assertThat(cache.<String>get("Spaces-2", "projects/all", () -> "reloaded")).isEqualTo("space two projects");
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void zeroTtlDisablesCaching() throws IOException {
+        MetadataCache cache = new MetadataCache(Duration.ZERO, 10, Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(null, "environments/all", loads::incrementAndGet);
+        cache.get(null, "environments/all", loads::incrementAndGet);
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedWhenFull() throws IOException {
+        MetadataCache cache = new MetadataCache(Duration.ofHours(1), 2, Runnable::run);
+
+        cache.get(null, "projects/all", () -> "projects");
+        cache.get(null, "tenants/all", () -> "tenants");
+        cache.get(null, "projects/all", () -> "unused");
+        cache.get(null, "tagsets/all", () -> "tag sets");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.<String>get(null, "projects/all", () -> "reloaded")).isEqualTo("projects");
+        assertThat(cache.<String>get(null, "tenants/all", () -> "reloaded")).isEqualTo("reloaded");
+    }
+
+    @Test
+    public void invalidatedEntriesAreReloaded() throws IOException {
+        MetadataCache cache = new MetadataCache(Duration.ofHours(1), 10, Runnable::run);
+        cache.get("Spaces-1", "projects/all", () -> "space one");
+        cache.get("Spaces-2", "projects/all", () -> "space two");
+
+        cache.invalidateSpace("Spaces-1");
+
+        assertThat(cache.<String>get("Spaces-1", "projects/all", () -> "reloaded")).isEqualTo("reloaded");
+        assertThat(cache.<String>get("Spaces-2", "projects/all", () -> "reloaded")).isEqualTo("space two");
+
+        cache.invalidateAll();
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void loadsRunningWhenInvalidatedAreNotCached() throws Exception {
+        List<Runnable> refreshes = new ArrayList<>();
+        MetadataCache cache = new MetadataCache(Duration.ofSeconds(1), 10, refreshes::add);
+
+        String loaded = cache.get(null, "projects/all", () -> {
+            cache.invalidateAll();
+            return "loaded before the invalidation";
+        });
+
+        assertThat(loaded).isEqualTo("loaded before the invalidation");
+        assertThat(cache.size()).isZero();
+
+        cache.get(null, "projects/all", () -> "cached");
+        Thread.sleep(600);
+        cache.get(null, "projects/all", () -> "refreshed before the invalidation");
+        cache.invalidateAll();
+        refreshes.forEach(Runnable::run);
+
+        assertThat(refreshes).hasSize(1);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void failedLoadsAreNotCached() throws IOException {
+        MetadataCache cache = new MetadataCache(Duration.ofHours(1), 10, Runnable::run);
+
+        assertThatThrownBy(() -> cache.get(null, "projects/all", () -> {
+            throw new IOException("Code 503");
+        })).isInstanceOf(IOException.class);
+
+        assertThat(cache.<String>get(null, "projects/all", () -> "loaded")).isEqualTo("loaded");
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        MetadataCache cache = new MetadataCache(Duration.ZERO, 10, Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MetadataCache.Loader<Integer> slowLoad = () -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return loads.incrementAndGet();
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<Integer> first = callers.submit(() -> cache.get(null, "projects/all", slowLoad));
+        loading.await();
+        Future<Integer> second = callers.submit(() -> cache.get(null, "projects/all", slowLoad));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(first.get()).isEqualTo(1);
+        assertThat(second.get()).isEqualTo(1);
+        assertThat(loads).hasValue(1);
+        callers.shutdown();
+    }
+}
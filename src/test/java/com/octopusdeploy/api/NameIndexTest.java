@@ -0,0 +1,92 @@
+package com.octopusdeploy.api;
+
+import com.octopusdeploy.api.data.Project;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NameIndexTest {
+
+    private final Map<String, String> pages = new HashMap<>();
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+
+    private final HttpTransport transport = new HttpTransport() {
+        @Override
+        public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+            String request = uri.getPath() + "?" + uri.getQuery();
+            requested.add(request);
+            String page = pages.get(request);
+            return handler.handle(page == null ? 404 : 200, Collections.emptyMap(),
+                    new ByteArrayInputStream((page == null ? "{}" : page).getBytes(StandardCharsets.UTF_8)));
+        }
+    };
+
+    private final ProjectsApi projectsApi = new OctopusApi("https://octopus.example.com", "API-KEY123", transport)
+            .forSpace("Spaces-1").getProjectsApi();
+
+    private static NameIndex<Project> index(Project... projects) {
+        TreeSet<Project> all = new TreeSet<>(Comparator.comparing(Project::getName).thenComparing(Project::getId));
+        for (Project project : projects) {
+            all.add(project);
+        }
+        return new NameIndex<>(all, Project::getName);
+    }
+
+    @Test
+    public void exactLookupIsCaseSensitive() {
+        NameIndex<Project> index = index(new Project("Projects-1", "Web"));
+
+        assertThat(index.find("Web", false).getId()).isEqualTo("Projects-1");
+        assertThat(index.find("web", false)).isNull();
+    }
+
+    @Test
+    public void ignoreCaseLookupPrefersAnExactMatch() {
+        NameIndex<Project> index = index(new Project("Projects-1", "WEB"), new Project("Projects-2", "web"));
+
+        assertThat(index.find("web", true).getId()).isEqualTo("Projects-2");
+        assertThat(index.find("Web", true).getId()).isEqualTo("Projects-1");
+    }
+
+    @Test
+    public void duplicateNamesResolveToTheFirstInOrder() {
+        NameIndex<Project> index = index(new Project("Projects-2", "Web"), new Project("Projects-1", "Web"));
+
+        assertThat(index.find("Web", false).getId()).isEqualTo("Projects-1");
+        assertThat(index.getAll()).hasSize(2);
+    }
+
+    @Test
+    public void partialNameLookupStopsAtTheExactMatch() throws IOException {
+        pages.put("/api/Spaces-1/projects?partialName=Web+App&take=30",
+                "{\"Items\":[{\"Id\":\"Projects-1\",\"Name\":\"Web App\"},{\"Id\":\"Projects-2\",\"Name\":\"Web App Two\"}],"
+                        + "\"Links\":{\"Page.Next\":\"/api/Spaces-1/projects?partialName=Web+App&skip=30&take=30\"}}");
+
+        assertThat(projectsApi.getProjectByName("Web App").getId()).isEqualTo("Projects-1");
+        assertThat(requested).containsExactly("/api/Spaces-1/projects?partialName=Web+App&take=30");
+    }
+
+    @Test
+    public void partialNameLookupReadsFurtherPagesForACaseInsensitiveMatch() throws IOException {
+        pages.put("/api/Spaces-1/projects?partialName=web&take=30",
+                "{\"Items\":[{\"Id\":\"Projects-2\",\"Name\":\"Web Two\"}],"
+                        + "\"Links\":{\"Page.Next\":\"/api/Spaces-1/projects?partialName=web&skip=30&take=30\"}}");
+        pages.put("/api/Spaces-1/projects?partialName=web&skip=30&take=30",
+                "{\"Items\":[{\"Id\":\"Projects-1\",\"Name\":\"WEB\"}],\"Links\":{}}");
+
+        assertThat(projectsApi.getProjectByName("web", false)).isNull();
+        assertThat(projectsApi.getProjectByName("web", true).getId()).isEqualTo("Projects-1");
+    }
+}
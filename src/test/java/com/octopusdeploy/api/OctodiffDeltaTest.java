@@ -0,0 +1,112 @@
+package com.octopusdeploy.api;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OctodiffDeltaTest {
+
+    private static final int CHUNK_SIZE = 2048;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    public void rotatingTheChecksumMatchesCalculatingIt() {
+        byte[] data = randomBytes(10_000);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        int checksum = OctodiffDelta.adler32(buffer, 0, CHUNK_SIZE);
+        for (int i = 0; i < 5000; i++) {
+            checksum = OctodiffDelta.rotate(checksum, data[i], data[i + CHUNK_SIZE], CHUNK_SIZE);
+        }
+
+        assertThat(checksum).isEqualTo(OctodiffDelta.adler32(buffer, 5000, CHUNK_SIZE));
+    }
+
+    @Test
+    public void theDeltaRebuildsTheNewFileFromTheOldOne() throws Exception {
+        byte[] previous = randomBytes(200_000);
+        byte[] next = new byte[previous.length + 100];
+        System.arraycopy(previous, 0, next, 0, 50_000);
+        System.arraycopy(previous, 50_000, next, 50_100, previous.length - 50_000);
+        next[150_000] ^= 1;
+        Path file = Files.write(temp.resolve("MyApp.1.0.1.zip"), next);
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        OctodiffDelta.writeDelta(OctodiffDelta.readSignature(signature(previous)), file, delta);
+
+        assertThat(apply(previous, delta.toByteArray())).isEqualTo(next);
+        assertThat(delta.size()).isLessThan(next.length / 20);
+    }
+
+    @Test
+    public void readSignatureRejectsOtherAlgorithms() {
+        byte[] signature = ("OCTOSIG\u0001\u0004SHA1\u0009Adler32V2>>>").getBytes(StandardCharsets.US_ASCII);
+
+        assertThatThrownBy(() -> OctodiffDelta.readSignature(signature))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Adler32V2");
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Write the signature Octopus would send for a file.
+     */
+    private static byte[] signature(byte[] file) throws IOException, NoSuchAlgorithmException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("OCTOSIG\u0001\u0004SHA1\u0007Adler32>>>".getBytes(StandardCharsets.US_ASCII));
+        for (int start = 0; start < file.length; start += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, file.length - start);
+            ByteBuffer chunk = ByteBuffer.allocate(6).order(ByteOrder.LITTLE_ENDIAN);
+            chunk.putShort((short) length).putInt(OctodiffDelta.adler32(ByteBuffer.wrap(file), start, length));
+            out.write(chunk.array());
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update(file, start, length);
+            out.write(sha1.digest());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Apply a delta the way the Octopus server does.
+     */
+    private static byte[] apply(byte[] previous, byte[] delta) {
+        ByteBuffer commands = ByteBuffer.wrap(delta).order(ByteOrder.LITTLE_ENDIAN);
+        commands.position("OCTODELTA".length() + 1 + "\u0004SHA1".length());
+        int hashLength = commands.getInt();
+        commands.position(commands.position() + hashLength + ">>>".length());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (commands.hasRemaining()) {
+            byte command = commands.get();
+            if (command == 0x60) {
+                long start = commands.getLong();
+                long length = commands.getLong();
+                out.write(previous, (int) start, (int) length);
+            } else {
+                byte[] data = new byte[(int) commands.getLong()];
+                commands.get(data);
+                out.write(data, 0, data.length);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,129 @@
+package com.octopusdeploy.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OctopusApiTest {
+
+    private final List<URI> requested = new CopyOnWriteArrayList<>();
+
+    private final HttpTransport transport = new HttpTransport() {
+        @Override
+        public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+            requested.add(uri);
+            return handler.handle(200, Collections.emptyMap(), new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)));
+        }
+    };
+
+    @Test
+    public void asyncCallsRunConcurrentlyAndRaiseTheirFailures() throws IOException {
+        OctopusApi api = new OctopusApi("https://octopus.example.com", "API-KEY123", transport);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        OctopusApi.Call<Boolean> waitForTheOther = () -> {
+            bothStarted.countDown();
+            try {
+                return bothStarted.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+        };
+
+        CompletableFuture<Boolean> first = api.async(waitForTheOther);
+        CompletableFuture<Boolean> second = api.forSpace("Spaces-1").async(waitForTheOther);
+
+        assertThat(OctopusApi.await(first)).isTrue();
+        assertThat(OctopusApi.await(second)).isTrue();
+        assertThatThrownBy(() -> OctopusApi.await(api.async(() -> {
+            throw new IOException("Not found");
+        }))).isInstanceOf(IOException.class).hasMessage("Not found");
+    }
+
+    @Test
+    public void spaceViewsAreCachedAndLeaveTheSharedInstanceUntouched() {
+        OctopusApi api = new OctopusApi("https://octopus.example.com", "API-KEY123", transport);
+
+        OctopusApi spaceOne = api.forSpace("Spaces-1");
+
+        assertThat(spaceOne).isNotSameAs(api);
+        assertThat(api.forSpace("Spaces-1")).isSameAs(spaceOne);
+        assertThat(spaceOne.forSystem()).isSameAs(api);
+        assertThat(api.forSpace("")).isSameAs(api);
+        assertThat(api.getSpaceId()).isNull();
+        assertThat(spaceOne.getSpaceId()).isEqualTo("Spaces-1");
+    }
+
+    @Test
+    public void concurrentRequestsAgainstDifferentSpacesGoToTheirOwnSpace() throws Exception {
+        OctopusApi api = new OctopusApi("https://octopus.example.com", "API-KEY123", transport, new MetadataCache(Duration.ZERO, 1));
+
+        Thread first = new Thread(() -> getEnvironments(api.forSpace("Spaces-1")));
+        Thread second = new Thread(() -> getEnvironments(api.forSpace("Spaces-2")));
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertThat(requested).containsExactlyInAnyOrder(
+                URI.create("https://octopus.example.com/api/Spaces-1/environments/all"),
+                URI.create("https://octopus.example.com/api/Spaces-2/environments/all"));
+    }
+
+    @Test
+    public void callsTheQueueCannotTakeRunOnTheCallingThread() throws Exception {
+        OctopusApi api = new OctopusApi("https://octopus.example.com", "API-KEY123", transport);
+        CountDownLatch release = new CountDownLatch(1);
+        OctopusApi.Call<Thread> blocked = () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+            return Thread.currentThread();
+        };
+        try {
+            for (int i = 0; i < OctopusApi.DEFAULT_ASYNC_THREADS + OctopusApi.ASYNC_QUEUE_CAPACITY; i++) {
+                api.async(blocked);
+            }
+
+            CompletableFuture<Thread> overflow = api.async(Thread::currentThread);
+
+            assertThat(overflow.isDone()).isTrue();
+            assertThat(OctopusApi.await(overflow)).isSameAs(Thread.currentThread());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void callsAfterShutdownStillComplete() throws IOException {
+        OctopusApi api = new OctopusApi("https://octopus.example.com", "API-KEY123", transport);
+
+        api.shutdown();
+
+        assertThat(OctopusApi.await(api.forSpace("Spaces-1").async(Thread::currentThread))).isSameAs(Thread.currentThread());
+    }
+
+    private static void getEnvironments(OctopusApi api) {
+        try {
+            api.getEnvironmentsApi().getAllEnvironments();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
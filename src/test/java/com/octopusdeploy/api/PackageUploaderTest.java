@@ -0,0 +1,157 @@
+package com.octopusdeploy.api;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class PackageUploaderTest {
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private int responseCode = 201;
+
+    @TempDir
+    Path temp;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.add(exchange.getRequestURI() + "\n" + exchange.getRequestHeaders().getFirst("X-Octopus-ApiKey") + "\n" + body);
+            byte[] response = "{\"ErrorMessage\":\"The package already exists\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(responseCode, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void uploadStreamsThePackageAsAMultipartForm() throws IOException {
+        Path file = Files.write(temp.resolve("MyApp.1.0.0.zip"), "zip contents".getBytes(StandardCharsets.UTF_8));
+
+        new PackageUploader("http://localhost:" + server.getAddress().getPort() + "/", "API-KEY123", "Spaces-1")
+                .upload(file, "OverwriteExisting");
+
+        assertThat(requests).hasSize(1);
+        assertThat(requests.get(0))
+                .startsWith("/api/Spaces-1/packages/raw?overwriteMode=OverwriteExisting\nAPI-KEY123\n")
+                .contains("Content-Disposition: form-data; name=\"data\"; filename=\"MyApp.1.0.0.zip\"")
+                .contains("\r\n\r\nzip contents\r\n");
+    }
+
+    @Test
+    public void uploadRaisesRejectedPackages() throws IOException {
+        Path file = Files.write(temp.resolve("MyApp.1.0.0.zip"), new byte[0]);
+        responseCode = 400;
+
+        assertThatThrownBy(() -> new PackageUploader("http://localhost:" + server.getAddress().getPort(), "API-KEY123", null)
+                .upload(file, "FailIfExists"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Code 400")
+                .hasMessageContaining("already exists");
+        assertThat(requests.get(0)).startsWith("/api/packages/raw?overwriteMode=FailIfExists\n");
+    }
+
+    @Test
+    public void isTransientRetriesDroppedConnectionsAndServerFailuresOnly() throws IOException {
+        Path file = Files.write(temp.resolve("MyApp.1.0.0.zip"), new byte[0]);
+        PackageUploader uploader = new PackageUploader("http://localhost:" + server.getAddress().getPort(), "API-KEY123", null);
+
+        responseCode = 503;
+        IOException unavailable = catchIOException(() -> uploader.upload(file, "OverwriteExisting"));
+        responseCode = 400;
+        IOException rejected = catchIOException(() -> uploader.upload(file, "OverwriteExisting"));
+        IOException missing = catchIOException(() -> uploader.upload(temp.resolve("Missing.1.0.0.zip"), "OverwriteExisting"));
+
+        assertThat(PackageUploader.isTransient(unavailable)).isTrue();
+        assertThat(PackageUploader.isTransient(new IOException("Connection reset"))).isTrue();
+        assertThat(PackageUploader.isTransient(rejected)).isFalse();
+        assertThat(PackageUploader.isTransient(missing)).isFalse();
+    }
+
+    @Test
+    public void ignoringSslErrorsUploadsToASelfSignedServer() throws Exception {
+        Path file = Files.write(temp.resolve("MyApp.1.0.0.zip"), new byte[0]);
+        HttpsServer https = PooledHttpTransportTest.selfSignedServer();
+        try {
+            String url = "https://localhost:" + https.getAddress().getPort();
+
+            assertThatThrownBy(() -> new PackageUploader(url, "API-KEY123", null).upload(file, "OverwriteExisting"))
+                    .isInstanceOf(IOException.class);
+            new PackageUploader(url, "API-KEY123", null, true).upload(file, "OverwriteExisting");
+        } finally {
+            https.stop(0);
+        }
+    }
+
+    @Test
+    public void findPackagesAsksForEveryPackageInOneRequest() throws IOException {
+        server.removeContext("/");
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestURI().toString());
+            byte[] response = "[{\"Id\":\"packages-MyApp.1.0.0\",\"Hash\":\"a9993e364706816aba3e25717850c26c9cd0d89d\"}]"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+
+        Map<String, String> found = new PackageUploader("http://localhost:" + server.getAddress().getPort(), "API-KEY123", "Spaces-1")
+                .findPackages(Arrays.asList("packages-MyApp.1.0.0", "packages-MyApp.Web.2.0.0"));
+
+        assertThat(requests).containsExactly("/api/Spaces-1/packages/bulk?ids=packages-MyApp.1.0.0&ids=packages-MyApp.Web.2.0.0");
+        assertThat(found).containsOnly(entry("packages-MyApp.1.0.0", "a9993e364706816aba3e25717850c26c9cd0d89d"));
+    }
+
+    @Test
+    public void packageResourceIdSplitsTheIdFromTheVersion() {
+        assertThat(PackageUploader.packageResourceId(Paths.get("MyApp.Web.1.0.0-beta.1.tar.gz"))).isEqualTo("packages-MyApp.Web.1.0.0-beta.1");
+        assertThat(PackageUploader.packageResourceId(Paths.get("MyApp.1.0.0.nupkg"))).isEqualTo("packages-MyApp.1.0.0");
+        assertThat(PackageUploader.packageResourceId(Paths.get("readme.txt"))).isNull();
+    }
+
+    @Test
+    public void sha1HashesTheFileContents() throws IOException {
+        Path file = Files.write(temp.resolve("MyApp.1.0.0.zip"), "abc".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(PackageUploader.sha1(file)).isEqualTo("a9993e364706816aba3e25717850c26c9cd0d89d");
+    }
+
+    private interface Upload {
+        void run() throws IOException;
+    }
+
+    private static IOException catchIOException(Upload upload) {
+        try {
+            upload.run();
+        } catch (IOException ex) {
+            return ex;
+        }
+        throw new AssertionError("Expected the upload to fail");
+    }
+}
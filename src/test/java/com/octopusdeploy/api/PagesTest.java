@@ -0,0 +1,98 @@
+package com.octopusdeploy.api;
+
+import com.octopusdeploy.api.data.Release;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PagesTest {
+
+    private final Map<String, String> pages = new HashMap<>();
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+
+    private final HttpTransport transport = new HttpTransport() {
+        @Override
+        public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+            String request = uri.getPath() + "?" + uri.getQuery();
+            requested.add(request);
+            String page = pages.get(request);
+            return handler.handle(page == null ? 404 : 200, Collections.emptyMap(),
+                    new ByteArrayInputStream((page == null ? "{}" : page).getBytes(StandardCharsets.UTF_8)));
+        }
+    };
+
+    private final ReleasesApi releasesApi = new OctopusApi("https://octopus.example.com", "API-KEY123", transport)
+            .forSpace("Spaces-1").getReleasesApi();
+
+    @Test
+    public void iteratingFollowsTheNextPageLinks() {
+        pages.put("/api/Spaces-1/projects/Projects-1/releases?take=2",
+                "{\"Items\":[{\"Version\":\"1.0.3\"},{\"Version\":\"1.0.2\"}],"
+                        + "\"Links\":{\"Page.Next\":\"/api/Spaces-1/projects/Projects-1/releases?skip=2&take=2\"}}");
+        pages.put("/api/Spaces-1/projects/Projects-1/releases?skip=2&take=2",
+                "{\"Items\":[{\"Version\":\"1.0.1\"}],\"Links\":{}}");
+
+        List<String> versions = new ArrayList<>();
+        for (Release release : releasesApi.getReleases("Projects-1", 2, false)) {
+            versions.add(release.getVersion());
+        }
+
+        assertThat(versions).containsExactly("1.0.3", "1.0.2", "1.0.1");
+    }
+
+    @Test
+    public void findStopsReadingPagesOnceAnItemMatches() throws IOException {
+        pages.put("/api/Spaces-1/projects/Projects-1/releases?take=2",
+                "{\"Items\":[{\"Version\":\"1.0.3\"},{\"Version\":\"1.0.2\"}],"
+                        + "\"Links\":{\"Page.Next\":\"/api/Spaces-1/projects/Projects-1/releases?skip=2&take=2\"}}");
+
+        Release release = releasesApi.getReleases("Projects-1", 2, false)
+                .find(candidate -> "1.0.2".equals(candidate.getVersion()));
+
+        assertThat(release.getVersion()).isEqualTo("1.0.2");
+        assertThat(requested).containsExactly("/api/Spaces-1/projects/Projects-1/releases?take=2");
+    }
+
+    @Test
+    public void prefetchedPagesAreReadInOrder() throws IOException {
+        pages.put("/api/Spaces-1/projects/Projects-1/releases?take=1",
+                "{\"Items\":[{\"Version\":\"1.0.2\"}],"
+                        + "\"Links\":{\"Page.Next\":\"/api/Spaces-1/projects/Projects-1/releases?skip=1&take=1\"}}");
+        pages.put("/api/Spaces-1/projects/Projects-1/releases?skip=1&take=1",
+                "{\"Items\":[{\"Version\":\"1.0.1\"}],\"Links\":{}}");
+
+        Release release = releasesApi.getReleases("Projects-1", 1, true)
+                .find(candidate -> "1.0.1".equals(candidate.getVersion()));
+
+        assertThat(release.getVersion()).isEqualTo("1.0.1");
+        assertThat(requested).hasSize(2);
+    }
+
+    @Test
+    public void deploymentLookupReadsOnlyTheNewestPage() throws IOException {
+        List<String> deployments = new ArrayList<>();
+        for (int i = 25; i > 0; i--) {
+            deployments.add("{\"Changes\":[{\"Version\":\"2.0." + i + "\"}],\"Links\":{\"Web\":\"/app#/deployments/Deployments-" + i + "\"}}");
+        }
+        pages.put("/api/Spaces-1/deployments?projects=Projects-1&environments=Environments-1&take=25",
+                "{\"Items\":[" + String.join(",", deployments) + "],"
+                        + "\"Links\":{\"Page.Next\":\"/api/Spaces-1/deployments?skip=25&take=25\"}}");
+
+        String url = new OctopusApi("https://octopus.example.com", "API-KEY123", transport).forSpace("Spaces-1")
+                .getDeploymentsApi().getPortalUrlForDeployment("Projects-1", "1.0.1", "Environments-1", null);
+
+        assertThat(url).isNull();
+        assertThat(requested).containsExactly("/api/Spaces-1/deployments?projects=Projects-1&environments=Environments-1&take=25");
+    }
+}
@@ -0,0 +1,132 @@
+package com.octopusdeploy.api;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PooledHttpTransportTest {
+
+    private static final String JSON = "[{\"Id\":\"Tenants-1\",\"Name\":\"Acme\"}]";
+
+    @Test
+    public void decodeDecompressesGzipBodies() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(JSON.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(read(PooledHttpTransport.decode(Collections.singletonList("gzip"),
+                new ByteArrayInputStream(compressed.toByteArray())))).isEqualTo(JSON);
+    }
+
+    @Test
+    public void decodeDecompressesZlibAndRawDeflateBodies() throws IOException {
+        assertThat(read(PooledHttpTransport.decode(Collections.singletonList("deflate"),
+                new ByteArrayInputStream(deflate(false))))).isEqualTo(JSON);
+        assertThat(read(PooledHttpTransport.decode(Collections.singletonList("deflate"),
+                new ByteArrayInputStream(deflate(true))))).isEqualTo(JSON);
+    }
+
+    @Test
+    public void closingAnInflatedBodyEndsItsInflater() throws IOException {
+        Inflater inflater = new Inflater(true);
+        InputStream body = new PooledHttpTransport.InflatingInputStream(new ByteArrayInputStream(deflate(true)), inflater);
+
+        assertThat(read(body)).isEqualTo(JSON);
+
+        assertThatThrownBy(inflater::getBytesRead).isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void decodeLeavesUncompressedAndEmptyBodiesAlone() throws IOException {
+        InputStream body = new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(PooledHttpTransport.decode(null, body)).isSameAs(body);
+        assertThat(read(PooledHttpTransport.decode(Collections.singletonList("gzip"),
+                new ByteArrayInputStream(new byte[0])))).isEmpty();
+    }
+
+    @Test
+    public void decodeRejectsUnknownEncodings() {
+        assertThatThrownBy(() -> PooledHttpTransport.decode(Collections.singletonList("br"),
+                new ByteArrayInputStream(new byte[] {1, 2})))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("br");
+    }
+
+    @Test
+    public void ignoringSslErrorsAcceptsASelfSignedCertificateForAnotherHost() throws Exception {
+        HttpsServer server = selfSignedServer();
+        try {
+            URI uri = URI.create("https://localhost:" + server.getAddress().getPort() + "/api");
+            PooledHttpTransport strict = new PooledHttpTransport(1, Duration.ofMinutes(1), false, false);
+            PooledHttpTransport lenient = new PooledHttpTransport(1, Duration.ofMinutes(1), false, true);
+
+            assertThatThrownBy(() -> strict.send("GET", uri, Collections.emptyMap(), null, (code, headers, body) -> code))
+                    .isInstanceOf(IOException.class);
+            assertThat(lenient.send("GET", uri, Collections.emptyMap(), null,
+                    (code, headers, body) -> code + " " + read(body))).isEqualTo("200 " + JSON);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * An HTTPS server whose certificate is self-signed and issued to octopus.invalid rather than localhost.
+     */
+    static HttpsServer selfSignedServer() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = PooledHttpTransportTest.class.getResourceAsStream("self-signed.p12")) {
+            keyStore.load(in, "changeit".toCharArray());
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, "changeit".toCharArray());
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(context));
+        server.createContext("/", exchange -> {
+            byte[] response = JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static byte[] deflate(boolean raw) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflater.write(JSON.getBytes(StandardCharsets.UTF_8));
+        }
+        return compressed.toByteArray();
+    }
+
+    private static String read(InputStream body) throws IOException {
+        try (InputStream in = body) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.octopusdeploy.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReleasesApiTest {
+
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+    private int responseCode = 200;
+
+    private final HttpTransport transport = new HttpTransport() {
+        @Override
+        public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+            requested.add(uri.getRawPath());
+            return handler.handle(responseCode, Collections.emptyMap(),
+                    new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+        }
+    };
+
+    private final ReleasesApi releasesApi = new OctopusApi("https://octopus.example.com", "API-KEY123", transport)
+            .forSpace("Spaces-1").getReleasesApi();
+
+    @Test
+    public void releaseExists_looksUpTheVersionDirectly() throws IOException {
+        assertThat(releasesApi.releaseExists("Projects-1", "1.0.0")).isTrue();
+        assertThat(requested).containsExactly("/api/Spaces-1/projects/Projects-1/releases/1.0.0");
+    }
+
+    @Test
+    public void releaseExists_encodesTheVersionAsAPathSegment() throws IOException {
+        assertThat(releasesApi.releaseExists("Projects-1", "1.0.0+build 5/main")).isTrue();
+        assertThat(requested).containsExactly("/api/Spaces-1/projects/Projects-1/releases/1.0.0%2Bbuild%205%2Fmain");
+    }
+
+    @Test
+    public void releaseExists_remembersMissingVersionsForAShortWhile() throws IOException {
+        responseCode = 404;
+
+        assertThat(releasesApi.releaseExists("Projects-1", "1.0.0")).isFalse();
+        assertThat(releasesApi.releaseExists("Projects-1", "1.0.0")).isFalse();
+
+        assertThat(requested).hasSize(1);
+    }
+
+    @Test
+    public void releaseExists_raisesOtherErrors() {
+        responseCode = 500;
+
+        assertThatThrownBy(() -> releasesApi.releaseExists("Projects-1", "1.0.0")).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,70 @@
+package com.octopusdeploy.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestThrottleTest {
+
+    private final List<Long> waits = new ArrayList<>();
+    private long nanos;
+
+    @Test
+    public void requestsBeyondTheBurstWaitTheirTurn() throws InterruptedException {
+        RequestThrottle throttle = new RequestThrottle(2, 0, () -> nanos, waits::add);
+
+        for (int i = 0; i < 4; i++) {
+            throttle.acquire().close();
+        }
+
+        assertThat(waits).containsExactly(TimeUnit.MILLISECONDS.toNanos(500), TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void theBucketRefillsOverTime() throws InterruptedException {
+        RequestThrottle throttle = new RequestThrottle(1, 0, () -> nanos, waits::add);
+        throttle.acquire().close();
+
+        nanos += TimeUnit.SECONDS.toNanos(1);
+        throttle.acquire().close();
+
+        assertThat(waits).isEmpty();
+    }
+
+    @Test
+    public void requestsWaitForAPlaceInFlight() throws InterruptedException {
+        RequestThrottle throttle = new RequestThrottle(0, 1);
+        RequestThrottle.Permit first = throttle.acquire();
+        Thread second = new Thread(() -> {
+            try {
+                throttle.acquire().close();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        second.start();
+
+        second.join(200);
+        assertThat(second.isAlive()).isTrue();
+
+        first.close();
+        second.join(5000);
+        assertThat(second.isAlive()).isFalse();
+    }
+
+    @Test
+    public void awaitingATurnTakesATokenButNoPlaceInFlight() throws InterruptedException {
+        RequestThrottle throttle = new RequestThrottle(1, 1, () -> nanos, waits::add);
+
+        throttle.awaitTurn();
+        throttle.awaitTurn();
+        RequestThrottle.Permit permit = throttle.acquire();
+        permit.close();
+
+        assertThat(waits).containsExactly(TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(2));
+    }
+}
@@ -0,0 +1,119 @@
+package com.octopusdeploy.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ResilientHttpTransportTest {
+
+    private static final URI URI = java.net.URI.create("https://octopus.example.com/api/projects/all");
+
+    private final Deque<Object> responses = new ArrayDeque<>();
+    private final List<Long> sleeps = new ArrayList<>();
+    private long nanos;
+    private int sent;
+
+    private final HttpTransport server = new HttpTransport() {
+        @Override
+        public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+            sent++;
+            Object response = responses.isEmpty() ? 200 : responses.poll();
+            if (response instanceof IOException) {
+                throw (IOException) response;
+            }
+            Map<String, List<String>> responseHeaders = response instanceof Integer
+                    ? Collections.emptyMap()
+                    : Collections.singletonMap("Retry-After", Collections.singletonList("2"));
+            int code = response instanceof Integer ? (Integer) response : 429;
+            return handler.handle(code, responseHeaders, new ByteArrayInputStream(new byte[0]));
+        }
+    };
+
+    private ResilientHttpTransport transport(int maxRetries, int failureThreshold) {
+        return new ResilientHttpTransport(server, maxRetries, Duration.ofMillis(100), Duration.ofSeconds(10),
+                failureThreshold, Duration.ofSeconds(30), () -> nanos, sleeps::add);
+    }
+
+    private static int send(HttpTransport transport, String method) throws IOException {
+        return transport.send(method, URI, Collections.emptyMap(), null, (code, headers, body) -> code);
+    }
+
+    @Test
+    public void retriesGetsThatFailToConnect() throws IOException {
+        responses.add(new ConnectException("refused"));
+        responses.add(503);
+
+        assertThat(send(transport(3, 0), "GET")).isEqualTo(200);
+        assertThat(sent).isEqualTo(3);
+        assertThat(sleeps).hasSize(2).allSatisfy(delay -> assertThat(delay).isBetween(0L, 200L));
+    }
+
+    @Test
+    public void doesNotRetryPostsUnlessTheServerAsksForIt() throws IOException {
+        responses.add(503);
+        assertThat(send(transport(3, 0), "POST")).isEqualTo(503);
+
+        responses.add("Retry-After");
+        assertThat(send(transport(3, 0), "POST")).isEqualTo(200);
+        assertThat(sleeps).containsExactly(2000L);
+    }
+
+    @Test
+    public void returnsTheLastResponseOnceRetriesAreUsedUp() throws IOException {
+        responses.add(502);
+        responses.add(502);
+
+        assertThat(send(transport(1, 0), "GET")).isEqualTo(502);
+        assertThat(sent).isEqualTo(2);
+    }
+
+    @Test
+    public void opensTheCircuitAfterRepeatedFailuresAndClosesItAfterASuccessfulTrial() throws IOException {
+        ResilientHttpTransport transport = transport(0, 2);
+        responses.add(500);
+        responses.add(500);
+        send(transport, "GET");
+        send(transport, "GET");
+
+        assertThat(transport.getCircuitState()).isEqualTo(ResilientHttpTransport.CircuitState.OPEN);
+        assertThatThrownBy(() -> send(transport, "GET")).isInstanceOf(ResilientHttpTransport.CircuitOpenException.class);
+        assertThat(sent).isEqualTo(2);
+
+        nanos += Duration.ofSeconds(30).toNanos();
+        assertThat(transport.getCircuitState()).isEqualTo(ResilientHttpTransport.CircuitState.HALF_OPEN);
+        assertThat(send(transport, "GET")).isEqualTo(200);
+        assertThat(transport.getCircuitState()).isEqualTo(ResilientHttpTransport.CircuitState.CLOSED);
+    }
+
+    @Test
+    public void clientErrorsDoNotCountAsFailures() throws IOException {
+        ResilientHttpTransport transport = transport(3, 1);
+        responses.add(404);
+
+        assertThat(send(transport, "GET")).isEqualTo(404);
+        assertThat(transport.getCircuitState()).isEqualTo(ResilientHttpTransport.CircuitState.CLOSED);
+        assertThat(transport.getConsecutiveFailures()).isZero();
+    }
+
+    @Test
+    public void retryAfterAcceptsSecondsAndDates() {
+        assertThat(ResilientHttpTransport.retryAfter(Collections.singletonMap("Retry-After", Collections.singletonList("5"))))
+                .isEqualTo(Duration.ofSeconds(5));
+        assertThat(ResilientHttpTransport.retryAfter(Collections.singletonMap("Retry-After",
+                Collections.singletonList("Wed, 21 Oct 2015 07:28:00 GMT")))).isEqualTo(Duration.ZERO);
+        assertThat(ResilientHttpTransport.retryAfter(Collections.emptyMap())).isNull();
+    }
+}
@@ -0,0 +1,122 @@
+package hudson.plugins.octopusdeploy;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.StreamBuildListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+Runs under JUnit-4, as the Jenkins test harness requires.
+ */
+public class BuildSummaryQueueTest {
+
+    private static final String RELEASE_URL = "/app#/Spaces-1/releases/Releases-1";
+
+    @Rule
+    public final JenkinsRule r = new JenkinsRule();
+
+    @Before
+    public void configureServers() {
+        r.jenkins.getDescriptorByType(OctopusDeployPlugin.DescriptorImpl.class).setOctopusDeployServers(Arrays.asList(
+                new OctopusDeployServer("Slow", "http://slow.octopus.invalid/", "API-KEY123", false),
+                new OctopusDeployServer("Fast", "http://fast.octopus.invalid", "API-KEY123", false)));
+        BuildSummaryQueue.initialRetryDelayMillis = 10;
+    }
+
+    @After
+    public void restoreRetryDelay() {
+        BuildSummaryQueue.initialRetryDelayMillis = BuildSummaryQueue.INITIAL_RETRY_DELAY_MILLIS;
+    }
+
+    @Test
+    public void linksFoundWhileTheBuildRunsAreWrittenToItsConsole() throws Exception {
+        FreeStyleProject project = r.createFreeStyleProject();
+        project.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
+                // Keeps the build running until the lookup has finished, as a slower build step would
+                BuildSummaryQueue.submit(build, new Log(listener), "Slow", "Spaces-1",
+                        BuildInfoSummary.OctopusDeployEventType.Release, api -> RELEASE_URL).join();
+                return true;
+            }
+        });
+
+        FreeStyleBuild build = r.buildAndAssertSuccess(project);
+
+        r.assertLogContains("Release created: \n\thttp://slow.octopus.invalid" + RELEASE_URL, build);
+        assertThat(build.getAction(BuildInfoSummary.class).getUrlName())
+                .isEqualTo("http://slow.octopus.invalid" + RELEASE_URL);
+    }
+
+    @Test
+    public void failedLookupsAreRetried() throws Exception {
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        AtomicInteger attempts = new AtomicInteger();
+        Log log = new Log(new StreamBuildListener(System.out, StandardCharsets.UTF_8));
+
+        BuildSummaryQueue.submit(build, log, "Fast", "Spaces-1", BuildInfoSummary.OctopusDeployEventType.Release, api -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("Connection reset");
+            }
+            return RELEASE_URL;
+        });
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (build.getAction(BuildInfoSummary.class) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(build.getAction(BuildInfoSummary.class).getUrlName())
+                .isEqualTo("http://fast.octopus.invalid" + RELEASE_URL);
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    public void aSlowServerDoesNotHoldUpLinksForAnother() throws Exception {
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        Log log = new Log(new StreamBuildListener(System.out, StandardCharsets.UTF_8));
+        CountDownLatch slowServer = new CountDownLatch(1);
+        List<CompletableFuture<Void>> slowLookups = new ArrayList<>();
+        try {
+            for (int i = 0; i <= BuildSummaryQueue.MAX_CONCURRENT_LOOKUPS_PER_SERVER; i++) {
+                slowLookups.add(BuildSummaryQueue.submit(build, log, "Slow", "Spaces-1",
+                        BuildInfoSummary.OctopusDeployEventType.Deployment, api -> {
+                            try {
+                                slowServer.await();
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return null;
+                        }));
+            }
+
+            BuildSummaryQueue.submit(build, log, "Fast", "Spaces-1",
+                    BuildInfoSummary.OctopusDeployEventType.Release, api -> RELEASE_URL).get(10, TimeUnit.SECONDS);
+
+            assertThat(build.getAction(BuildInfoSummary.class).getUrlName())
+                    .isEqualTo("http://fast.octopus.invalid" + RELEASE_URL);
+            assertThat(slowLookups).noneMatch(CompletableFuture::isDone);
+        } finally {
+            slowServer.countDown();
+        }
+    }
+}
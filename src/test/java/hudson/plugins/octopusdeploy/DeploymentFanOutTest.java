@@ -0,0 +1,109 @@
+package hudson.plugins.octopusdeploy;
+
+import com.octopusdeploy.api.OctopusApi;
+import com.octopusdeploy.api.TasksApi;
+import com.octopusdeploy.api.data.Task;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.plugins.octopusdeploy.cli.OctopusCliExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeploymentFanOutTest {
+
+    @Test
+    public void targets_combineEveryEnvironmentWithEveryTenant() {
+        List<DeploymentFanOut.Target> targets = DeploymentFanOut.targets("Test, Production", "Acme,Globex");
+
+        assertThat(targets).extracting(DeploymentFanOut.Target::toString).containsExactly(
+                "Test for Acme", "Test for Globex", "Production for Acme", "Production for Globex");
+    }
+
+    @Test
+    public void targets_withoutTenants_areUntenanted() {
+        List<DeploymentFanOut.Target> targets = DeploymentFanOut.targets("Test,Production", " ");
+
+        assertThat(targets).extracting(DeploymentFanOut.Target::getTenant).containsExactly(null, null);
+    }
+
+    @Test
+    public void deployAll_collectsTheTaskIdsAndReportsFailures() throws Exception {
+        // Arrange
+        BuildListener listener = mock(BuildListener.class);
+        when(listener.getLogger()).thenReturn(mock(PrintStream.class));
+        AtomicInteger deployments = new AtomicInteger();
+        List<String> taskIds = new ArrayList<>();
+
+        // Act
+        Result result = new DeploymentFanOut(new Log(listener), 2).deployAll(
+                DeploymentFanOut.targets("Test,Staging,Production", null),
+                () -> {
+                    OctopusCliExecutor executor = mock(OctopusCliExecutor.class);
+                    when(executor.getDeploymentTaskIds())
+                            .thenReturn(Collections.singletonList("ServerTasks-" + deployments.incrementAndGet()));
+                    return executor;
+                },
+                (executor, target) -> "Staging".equals(target.getEnvironment()) ? Result.FAILURE : Result.SUCCESS,
+                taskIds);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.FAILURE);
+        assertThat(taskIds).hasSize(2).allMatch(id -> id.startsWith("ServerTasks-"));
+    }
+
+    @Test
+    public void deployAll_withoutTargets_failsWithoutDeploying() throws Exception {
+        // Arrange
+        BuildListener listener = mock(BuildListener.class);
+        when(listener.getLogger()).thenReturn(mock(PrintStream.class));
+        List<String> taskIds = new ArrayList<>();
+
+        // Act
+        Result result = new DeploymentFanOut(new Log(listener), 2).deployAll(
+                DeploymentFanOut.targets(" , ", null),
+                () -> mock(OctopusCliExecutor.class),
+                (executor, target) -> Result.SUCCESS,
+                taskIds);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.FAILURE);
+        assertThat(taskIds).isEmpty();
+        verify(listener).error("There is nothing to deploy to: no environment was given.");
+    }
+
+    @Test
+    public void waitForAll_retriesATaskThatCouldNotBeChecked() throws Exception {
+        // Arrange
+        BuildListener listener = mock(BuildListener.class);
+        when(listener.getLogger()).thenReturn(mock(PrintStream.class));
+        OctopusApi api = mock(OctopusApi.class);
+        TasksApi tasksApi = mock(TasksApi.class);
+        when(api.getTasksApi()).thenReturn(tasksApi);
+        when(tasksApi.getTask("ServerTasks-1"))
+                .thenThrow(new IOException("Connection reset"))
+                .thenReturn(new Task("ServerTasks-1", "Deploy", "", "Success", true));
+        when(tasksApi.getTask("ServerTasks-2"))
+                .thenReturn(new Task("ServerTasks-2", "Deploy", "", "Success", true));
+
+        // Act
+        Result result = new DeploymentFanOut(new Log(listener), 2).waitForAll(
+                api, Arrays.asList("ServerTasks-1", "ServerTasks-2"), "1.00:00:00", true);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.SUCCESS);
+        verify(tasksApi, never()).cancelTask("ServerTasks-1");
+    }
+}
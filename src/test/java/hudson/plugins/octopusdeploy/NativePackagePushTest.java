@@ -0,0 +1,191 @@
+package hudson.plugins.octopusdeploy;
+
+import com.octopusdeploy.api.PackageUploader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NativePackagePushTest {
+
+    private static final Pattern FILE_NAME = Pattern.compile("filename=\"([^\"]+)\"");
+    /** Answers an upload by dropping the connection once the whole package has been received. */
+    private static final int DROP_CONNECTION = -1;
+
+    /** The hash of each package the feed has, keyed by package id. */
+    private final Map<String, String> stored = new ConcurrentHashMap<>();
+    /** The status code to answer each upload with in turn; 201 once they run out. */
+    private final Queue<Integer> uploadResponses = new ConcurrentLinkedQueue<>();
+    /** The packages the feed stores from an upload whose connection then drops. */
+    private final Map<String, String> storedBeforeDrop = new ConcurrentHashMap<>();
+    private final List<String> uploaded = new CopyOnWriteArrayList<>();
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private HttpServer server;
+
+    @TempDir
+    Path temp;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/packages/bulk", exchange -> {
+            List<String> found = new ArrayList<>();
+            for (String parameter : exchange.getRequestURI().getQuery().split("&")) {
+                String id = parameter.substring("ids=".length());
+                if (stored.containsKey(id)) {
+                    found.add(String.format("{\"Id\":\"%s\",\"Hash\":\"%s\"}", id, stored.get(id)));
+                }
+            }
+            respond(exchange, 200, "[" + String.join(",", found) + "]");
+        });
+        server.createContext("/api/packages/raw", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Matcher fileName = FILE_NAME.matcher(body);
+            uploaded.add(fileName.find() ? fileName.group(1) : "");
+            Integer code = uploadResponses.poll();
+            if (code != null && code == DROP_CONNECTION) {
+                stored.putAll(storedBeforeDrop);
+                exchange.close();
+                return;
+            }
+            respond(exchange, code == null ? 201 : code, "{}");
+        });
+        server.start();
+        NativePackagePush.retryBaseDelayMillis = 1;
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+        NativePackagePush.retryBaseDelayMillis = NativePackagePush.RETRY_BASE_DELAY_MILLIS;
+    }
+
+    @Test
+    public void ignoreIfExistsSkipsPackagesTheServerHas() throws Exception {
+        Path existing = write("MyApp.1.0.0.zip", "old");
+        Path missing = write("MyApp.Web.1.0.0.zip", "new");
+        stored.put("packages-MyApp.1.0.0", "0000000000000000000000000000000000000000");
+
+        push(OverwriteMode.IgnoreIfExists, existing, missing);
+
+        assertThat(uploaded).containsExactly("MyApp.Web.1.0.0.zip");
+        assertThat(log()).contains("Skipped MyApp.1.0.0.zip, the server already has this package");
+    }
+
+    @Test
+    public void overwriteExistingSendsOnlyPackagesThatChanged() throws Exception {
+        Path unchanged = write("MyApp.1.0.0.zip", "same");
+        Path changed = write("MyApp.Web.1.0.0.zip", "changed");
+        stored.put("packages-MyApp.1.0.0", PackageUploader.sha1(unchanged));
+        stored.put("packages-MyApp.Web.1.0.0", "0000000000000000000000000000000000000000");
+
+        push(OverwriteMode.OverwriteExisting, unchanged, changed);
+
+        assertThat(uploaded).containsExactly("MyApp.Web.1.0.0.zip");
+    }
+
+    @Test
+    public void failIfExistsSendsEveryPackageAndReportsThoseRejected() throws Exception {
+        Path first = write("MyApp.1.0.0.zip", "one");
+        stored.put("packages-MyApp.1.0.0", PackageUploader.sha1(first));
+        uploadResponses.add(400);
+
+        assertThatThrownBy(() -> push(OverwriteMode.FailIfExists, first))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Failed to push 1 of 1 packages");
+        assertThat(uploaded).containsExactly("MyApp.1.0.0.zip");
+        assertThat(log()).contains("Failed to push MyApp.1.0.0.zip: Code 400");
+    }
+
+    @Test
+    public void aServerFailureIsRetried() throws Exception {
+        Path file = write("MyApp.1.0.0.zip", "contents");
+        uploadResponses.add(503);
+
+        push(OverwriteMode.OverwriteExisting, 3, file);
+
+        assertThat(uploaded).containsExactly("MyApp.1.0.0.zip", "MyApp.1.0.0.zip");
+        assertThat(log()).contains("Attempt 1 of 3 to push MyApp.1.0.0.zip failed")
+                .contains("Pushed MyApp.1.0.0.zip");
+    }
+
+    @Test
+    public void aPackageStoredBeforeTheConnectionDroppedIsNotSentAgain() throws Exception {
+        Path file = write("MyApp.1.0.0.zip", "contents");
+        uploadResponses.add(DROP_CONNECTION);
+        storedBeforeDrop.put("packages-MyApp.1.0.0", PackageUploader.sha1(file));
+
+        push(OverwriteMode.OverwriteExisting, 3, file);
+
+        assertThat(uploaded).containsExactly("MyApp.1.0.0.zip");
+        assertThat(log()).contains("Pushed MyApp.1.0.0.zip, the server stored it before the connection failed");
+    }
+
+    @Test
+    public void thePushFailsOnceTheAttemptsRunOut() throws Exception {
+        Path file = write("MyApp.1.0.0.zip", "contents");
+        uploadResponses.add(503);
+        uploadResponses.add(502);
+        uploadResponses.add(503);
+
+        assertThatThrownBy(() -> push(OverwriteMode.OverwriteExisting, 3, file))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Failed to push 1 of 1 packages");
+        assertThat(uploaded).hasSize(3);
+        assertThat(log()).contains("Attempt 2 of 3 to push MyApp.1.0.0.zip failed")
+                .contains("Failed to push MyApp.1.0.0.zip: Code 503");
+    }
+
+    private void push(OverwriteMode overwriteMode, Path... files) throws IOException, InterruptedException {
+        push(overwriteMode, 1, files);
+    }
+
+    private void push(OverwriteMode overwriteMode, int maxUploadAttempts, Path... files)
+            throws IOException, InterruptedException {
+        List<String> paths = new ArrayList<>();
+        for (Path file : files) {
+            paths.add(file.toString());
+        }
+        PrintStream logger = new PrintStream(log, true, StandardCharsets.UTF_8);
+        new NativePackagePush(paths, "http://localhost:" + server.getAddress().getPort(), "API-KEY123", null,
+                false, overwriteMode, 1, false, maxUploadAttempts, () -> logger)
+                .invoke(temp.toFile(), null);
+    }
+
+    private Path write(String fileName, String contents) throws IOException {
+        return Files.write(temp.resolve(fileName), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String log() {
+        return new String(log.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] response = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, response.length);
+        exchange.getResponseBody().write(response);
+        exchange.close();
+    }
+}
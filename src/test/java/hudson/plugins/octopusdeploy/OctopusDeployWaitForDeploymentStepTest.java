@@ -0,0 +1,159 @@
+package hudson.plugins.octopusdeploy;
+
+import com.sun.net.httpserver.HttpServer;
+import hudson.model.Result;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.JenkinsSessionRule;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+Runs under JUnit-4, as the Jenkins test harness requires.
+ */
+public class OctopusDeployWaitForDeploymentStepTest {
+
+    private static final Map<String, String> TASKS = new ConcurrentHashMap<>();
+    private static final List<String> CANCELLED = new CopyOnWriteArrayList<>();
+    private static HttpServer octopus;
+
+    @Rule
+    public final JenkinsSessionRule sessions = new JenkinsSessionRule();
+
+    @BeforeClass
+    public static void startOctopus() throws IOException {
+        octopus = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        octopus.createContext("/api/Spaces-1/tasks/", exchange -> {
+            String taskId = exchange.getRequestURI().getPath().substring("/api/Spaces-1/tasks/".length());
+            String response;
+            if (taskId.endsWith("/cancel")) {
+                CANCELLED.add(taskId.substring(0, taskId.length() - "/cancel".length()));
+                response = "{}";
+            } else {
+                response = TASKS.get(taskId);
+            }
+            byte[] body = (response == null ? "{}" : response).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(response == null ? 404 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        octopus.start();
+    }
+
+    @AfterClass
+    public static void stopOctopus() {
+        octopus.stop(0);
+    }
+
+    @Before
+    public void forgetTasks() {
+        TASKS.clear();
+        CANCELLED.clear();
+    }
+
+    @Test
+    public void waitsUntilTheTaskSucceeds() throws Throwable {
+        sessions.then(r -> {
+            WorkflowRun run = startWaiting(r, "ServerTasks-1", "");
+            TASKS.put("ServerTasks-1", task("ServerTasks-1", "Success", true));
+
+            r.assertBuildStatusSuccess(r.waitForCompletion(run));
+            r.assertLogContains("Deployment task ServerTasks-1 finished: Success", run);
+        });
+    }
+
+    @Test
+    public void failsWhenTheTaskFails() throws Throwable {
+        sessions.then(r -> {
+            WorkflowRun run = startWaiting(r, "ServerTasks-2", "");
+            TASKS.put("ServerTasks-2", task("ServerTasks-2", "Failed", true));
+
+            r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(run));
+            r.assertLogContains("An Octopus deployment did not succeed", run);
+        });
+    }
+
+    @Test
+    public void cancelsTheTaskWhenItTimesOut() throws Throwable {
+        sessions.then(r -> {
+            WorkflowRun run = startWaiting(r, "ServerTasks-3", ", deploymentTimeout: '00:00:01', cancelOnTimeout: true");
+
+            r.assertBuildStatus(Result.FAILURE, r.waitForCompletion(run));
+            r.assertLogContains("Octopus deployment tasks [ServerTasks-3] did not complete within PT1S.", run);
+            r.assertLogContains("Timed out waiting for Octopus deployments", run);
+            assertThat(CANCELLED).containsExactly("ServerTasks-3");
+        });
+    }
+
+    @Test
+    public void carriesOnWaitingAfterARestart() throws Throwable {
+        sessions.then(r -> startWaiting(r, "ServerTasks-4", ""));
+        TASKS.put("ServerTasks-4", task("ServerTasks-4", "Success", true));
+        sessions.then(r -> {
+            WorkflowRun run = r.jenkins.getItemByFullName("wait", WorkflowJob.class).getBuildByNumber(1);
+
+            r.assertBuildStatusSuccess(r.waitForCompletion(run));
+            r.assertLogContains("Deployment task ServerTasks-4 finished: Success", run);
+        });
+    }
+
+    @Test
+    public void succeedsWhenTheBuildStartedNoDeployments() throws Throwable {
+        sessions.then(r -> {
+            WorkflowJob job = r.createProject(WorkflowJob.class, "wait");
+            job.setDefinition(new CpsFlowDefinition("octopusWaitForDeployment()", true));
+
+            WorkflowRun run = r.buildAndAssertSuccess(job);
+            r.assertLogContains("There are no Octopus deployments to wait for.", run);
+        });
+    }
+
+    @Test
+    public void failsWhenNoServerIsConfigured() throws Throwable {
+        sessions.then(r -> {
+            WorkflowJob job = r.createProject(WorkflowJob.class, "wait");
+            job.setDefinition(new CpsFlowDefinition(
+                    "octopusWaitForDeployment spaceId: 'Spaces-1', taskId: 'ServerTasks-5'", true));
+
+            WorkflowRun run = r.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+            r.assertLogContains("No Octopus Deploy server is configured to wait for deployment task ServerTasks-5", run);
+        });
+    }
+
+    /**
+     * Start a pipeline waiting for a task that is still executing, and wait until it has checked the task.
+     */
+    private static WorkflowRun startWaiting(JenkinsRule r, String taskId, String options) throws Exception {
+        r.jenkins.getDescriptorByType(OctopusDeployPlugin.DescriptorImpl.class).setOctopusDeployServers(
+                Collections.singletonList(new OctopusDeployServer("Local",
+                        "http://localhost:" + octopus.getAddress().getPort(), "API-KEY123", false)));
+        TASKS.put(taskId, task(taskId, "Executing", false));
+
+        WorkflowJob job = r.createProject(WorkflowJob.class, "wait");
+        job.setDefinition(new CpsFlowDefinition(String.format(
+                "octopusWaitForDeployment serverId: 'Local', spaceId: 'Spaces-1', taskId: '%s'%s", taskId, options), true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        r.waitForMessage("Waiting for Octopus deployment tasks [" + taskId + "]", run);
+        return run;
+    }
+
+    private static String task(String taskId, String state, boolean completed) {
+        return String.format("{\"Id\":\"%s\",\"State\":\"%s\",\"IsCompleted\":%s}", taskId, state, completed);
+    }
+}
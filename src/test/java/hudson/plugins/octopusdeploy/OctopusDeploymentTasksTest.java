@@ -0,0 +1,53 @@
+package hudson.plugins.octopusdeploy;
+
+import hudson.model.Run;
+import hudson.plugins.octopusdeploy.OctopusDeploymentTasks.DeploymentTask;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OctopusDeploymentTasksTest {
+
+    private final OctopusDeploymentTasks[] recorded = new OctopusDeploymentTasks[1];
+
+    private Run<?, ?> run() {
+        Run<?, ?> run = mock(Run.class);
+        when(run.getAction(OctopusDeploymentTasks.class)).thenAnswer(invocation -> recorded[0]);
+        doAnswer(invocation -> recorded[0] = invocation.getArgument(0)).when(run).addAction(any());
+        return run;
+    }
+
+    @Test
+    public void recordKeepsTheTasksUntilTheyAreWaitedFor() throws IOException {
+        Run<?, ?> run = run();
+
+        OctopusDeploymentTasks.record(run, "Local", "Spaces-1", Arrays.asList("ServerTasks-1", "ServerTasks-2"));
+        recorded[0].waited(Collections.singletonList(new DeploymentTask("Local", "Spaces-1", "ServerTasks-1")));
+
+        assertThat(recorded[0].getPending()).containsExactly(new DeploymentTask("Local", "Spaces-1", "ServerTasks-2"));
+        assertThat(recorded[0].getUntracked()).isZero();
+    }
+
+    @Test
+    public void deploymentsWithoutTasksAreCountedUntilAStepWaits() throws IOException {
+        Run<?, ?> run = run();
+
+        OctopusDeploymentTasks.record(run, "Local", "Spaces-1", Collections.emptyList());
+        OctopusDeploymentTasks.record(run, "Local", "Spaces-1", Collections.emptyList());
+
+        assertThat(recorded[0].getPending()).isEmpty();
+        assertThat(recorded[0].getUntracked()).isEqualTo(2);
+
+        recorded[0].waited(Collections.emptyList());
+
+        assertThat(recorded[0].getUntracked()).isZero();
+    }
+}
@@ -0,0 +1,45 @@
+package hudson.plugins.octopusdeploy.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CliOutputTest {
+
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+    @Test
+    public void linesReachTheLogAsSoonAsTheyAreComplete() throws IOException {
+        CliOutput output = new CliOutput(new PrintStream(log, true, "UTF-8"), 1024);
+
+        output.write("Creating release\nDeploy".getBytes(StandardCharsets.UTF_8));
+        assertThat(log.toString("UTF-8")).isEqualTo("Creating release\n");
+
+        output.write("ing\n{\"Version\":\"1.0.0\"}".getBytes(StandardCharsets.UTF_8));
+        output.close();
+
+        assertThat(log.toString("UTF-8")).isEqualTo("Creating release\nDeploying\n{\"Version\":\"1.0.0\"}");
+        assertThat(output.getTail()).isEqualTo("Creating release\nDeploying\n{\"Version\":\"1.0.0\"}");
+        assertThat(output.isTruncated()).isFalse();
+    }
+
+    @Test
+    public void onlyTheEndOfTheOutputIsKept() throws IOException {
+        CliOutput output = new CliOutput(new PrintStream(log, true, "UTF-8"), 20);
+
+        for (int i = 0; i < 10; i++) {
+            output.write(("progress " + i + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        output.write("[{\"ServerTaskId\":\"ServerTasks-1\"}]\n".getBytes(StandardCharsets.UTF_8));
+        output.close();
+
+        assertThat(output.getTail()).isEqualTo("[{\"ServerTaskId\":\"ServerTasks-1\"}]\n");
+        assertThat(output.isTruncated()).isTrue();
+        assertThat(log.toString("UTF-8")).startsWith("progress 0\n").endsWith("ServerTasks-1\"}]\n");
+    }
+}
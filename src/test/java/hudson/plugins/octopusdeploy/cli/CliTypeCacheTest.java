@@ -0,0 +1,51 @@
+package hudson.plugins.octopusdeploy.cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CliTypeCacheTest {
+
+    @AfterEach
+    public void tearDown() {
+        CliTypeCache.invalidateAll();
+    }
+
+    @Test
+    public void detectedTypeIsReusedForTheSameNodeAndPath() {
+        CliTypeCache.put("agent-1", "/opt/octopus/octopus", 100L, CliType.Current);
+
+        assertThat(CliTypeCache.get("agent-1", "/opt/octopus/octopus", 100L)).isEqualTo(CliType.Current);
+        assertThat(CliTypeCache.get("agent-2", "/opt/octopus/octopus", 100L)).isNull();
+        assertThat(CliTypeCache.get("agent-1", "/opt/octo/Octo", 100L)).isNull();
+    }
+
+    @Test
+    public void changedBinaryIsProbedAgain() {
+        CliTypeCache.put("", "C:\\Tools\\Octo.exe", 100L, CliType.Legacy);
+
+        assertThat(CliTypeCache.get("", "C:\\Tools\\Octo.exe", 200L)).isNull();
+    }
+
+    @Test
+    public void invalidateAllForgetsEveryNode() {
+        CliTypeCache.put("agent-1", "octopus", 0L, CliType.Current);
+        CliTypeCache.put("agent-2", "octopus", 0L, CliType.Legacy);
+
+        CliTypeCache.invalidateAll();
+
+        assertThat(CliTypeCache.get("agent-1", "octopus", 0L)).isNull();
+        assertThat(CliTypeCache.get("agent-2", "octopus", 0L)).isNull();
+    }
+
+    @Test
+    public void onlyTheLegacyCliRejectingTheConfigCommandIsALegacySignature() {
+        assertThat(CliTypeCache.isLegacySignature("Command config is not supported")).isTrue();
+        assertThat(CliTypeCache.isLegacySignature("Unrecognized command or argument 'config'")).isTrue();
+        assertThat(CliTypeCache.isLegacySignature("Usage: octo <command> [<options>]")).isTrue();
+        assertThat(CliTypeCache.isLegacySignature("")).isFalse();
+        assertThat(CliTypeCache.isLegacySignature("Error: config file /home/jenkins/.config/octopus/cli_config.json is not readable")).isFalse();
+        assertThat(CliTypeCache.isLegacySignature(null)).isFalse();
+    }
+}
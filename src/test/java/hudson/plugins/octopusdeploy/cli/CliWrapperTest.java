@@ -51,6 +51,7 @@ public class CliWrapperTest {
     public void setUp() throws IOException, InterruptedException {
         when(listener.getLogger()).thenReturn(logger);
 
+        // A server that ignores SSL errors, which the CLI can only be told by logging in
         cliWrapper = spy(new TestableCliWrapper(
                 "test-tool-id",
                 workspace,
@@ -62,7 +63,7 @@ public class CliWrapperTest {
                 "Spaces-1",
                 "TestProject",
                 true,
-                false
+                true
         ));
 
         // Mock the execute method to return success
@@ -446,12 +447,11 @@ public class CliWrapperTest {
         // Assert
         assertThat(result).isEqualTo(Result.SUCCESS);
 
-        // Verify execute was called four times:
-        // 1. login (from createRelease)
+        // Verify execute was called three times, as deployRelease reuses the login from createRelease:
+        // 1. login
         // 2. create release
-        // 3. login (from deployRelease)
-        // 4. deploy
-        verify(cliWrapper, times(4)).execute(argsCaptor.capture(), anySet());
+        // 3. deploy
+        verify(cliWrapper, times(3)).execute(argsCaptor.capture(), anySet());
 
         List<List<String>> allArgs = argsCaptor.getAllValues();
 
@@ -472,12 +472,8 @@ public class CliWrapperTest {
         assertThat(createArgs).contains("--git-commit", gitCommit);
         assertThat(createArgs).contains("--debug");
 
-        // Verify the third call is login (from deployRelease)
-        List<String> loginArgs2 = allArgs.get(2);
-        assertThat(loginArgs2).contains("login");
-
-        // Verify the fourth call is deploy with all the deployment parameters
-        List<String> deployArgs = allArgs.get(3);
+        // Verify the third call is deploy with all the deployment parameters
+        List<String> deployArgs = allArgs.get(2);
         assertThat(deployArgs).containsSequence("release", "deploy");
         assertThat(deployArgs).contains("--project", "TestProject");
         assertThat(deployArgs).contains("--version", version);
@@ -489,6 +485,82 @@ public class CliWrapperTest {
         assertThat(deployArgs).contains("--debug");
     }
 
+    @Test
+    public void deployRelease_remembersTheServerTaskIds() throws IOException, InterruptedException {
+        // Arrange
+        doReturn(new CliExecutionResult("", 0))
+                .doReturn(new CliExecutionResult("[{\"ServerTaskId\":\"ServerTasks-1\"},{\"ServerTaskId\":\"ServerTasks-2\"}]", 0))
+                .when(cliWrapper)
+                .execute(anyList(), anySet());
+
+        // Act
+        Result result = cliWrapper.deployRelease("1.0.0", "Production", null, null,
+                Collections.emptyList(), false, null, false, null);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.SUCCESS);
+        assertThat(cliWrapper.getDeploymentTaskIds()).containsExactly("ServerTasks-1", "ServerTasks-2");
+    }
+
+    @Test
+    public void createRelease_remembersTheCreatedRelease() throws IOException, InterruptedException {
+        // Arrange
+        doReturn(new CliExecutionResult("", 0))
+                .doReturn(new CliExecutionResult("{\"Id\":\"Releases-7\",\"Version\":\"1.0.7\"}", 0))
+                .when(cliWrapper)
+                .execute(anyList(), anySet());
+
+        // Act
+        Result result = cliWrapper.createRelease(null, null, null, null, null, null, null,
+                null, null, null, Collections.emptyList(), false, null, false, null);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.SUCCESS);
+        assertThat(cliWrapper.getCreatedReleaseId()).isEqualTo("Releases-7");
+        assertThat(cliWrapper.getCreatedReleaseVersion()).isEqualTo("1.0.7");
+    }
+
+    @Test
+    public void laterStepsOfTheSameBuildLogInAgain() throws IOException, InterruptedException {
+        // Arrange
+        TestableCliWrapper laterStep = spy(new TestableCliWrapper("test-tool-id", workspace, launcher,
+                environment, listener, "https://octopus.example.com", "API-KEY123", "Spaces-1",
+                "TestProject", true, true));
+        doReturn(new CliExecutionResult("", 0)).when(laterStep).execute(anyList(), anySet());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> argsCaptor = ArgumentCaptor.forClass(List.class);
+
+        // Act
+        cliWrapper.push(Collections.singletonList("/path/to/package.zip"), null, null);
+        Result result = laterStep.push(Collections.singletonList("/path/to/package.zip"), null, null);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.SUCCESS);
+        verify(cliWrapper, times(2)).execute(anyList(), anySet());
+        verify(laterStep, times(2)).execute(argsCaptor.capture(), anySet());
+        assertThat(argsCaptor.getAllValues().get(0)).contains("login");
+        assertThat(argsCaptor.getAllValues().get(1)).containsSequence("package", "upload");
+    }
+
+    @Test
+    public void commandsRunWithoutLoggingInUnlessSslErrorsAreIgnored() throws IOException, InterruptedException {
+        // Arrange
+        TestableCliWrapper wrapper = spy(new TestableCliWrapper("test-tool-id", workspace, launcher,
+                environment, listener, "https://octopus.example.com", "API-KEY123", "Spaces-1",
+                "TestProject", true, false));
+        doReturn(new CliExecutionResult("", 0)).when(wrapper).execute(anyList(), anySet());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> argsCaptor = ArgumentCaptor.forClass(List.class);
+
+        // Act
+        Result result = wrapper.push(Collections.singletonList("/path/to/package.zip"), null, null);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.SUCCESS);
+        verify(wrapper, times(1)).execute(argsCaptor.capture(), anySet());
+        assertThat(argsCaptor.getValue()).containsSequence("package", "upload");
+    }
+
     /**
      * Testable wrapper that exposes the protected execute method for testing
      */
@@ -0,0 +1,155 @@
+package hudson.plugins.octopusdeploy.cli;
+
+import com.octopusdeploy.api.HttpTransport;
+import com.octopusdeploy.api.OctopusApi;
+import com.octopusdeploy.api.data.SelectedPackage;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class RestApiExecutorTest {
+
+    private final Map<String, String> responses = new HashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    /** Requests whose first attempt fails, as when the connection is reset. */
+    private final Set<String> failOnce = new HashSet<>();
+
+    private final HttpTransport transport = new HttpTransport() {
+        @Override
+        public <T> T send(String method, URI uri, Map<String, String> headers, byte[] body, ResponseHandler<T> handler) throws IOException {
+            String request = method + " " + uri.getPath();
+            requests.add(body == null ? request : request + " " + new String(body, StandardCharsets.UTF_8));
+            if (failOnce.remove(request)) {
+                throw new IOException("Connection reset");
+            }
+            String response = responses.get(request);
+            int code = response == null ? 404 : 200;
+            return handler.handle(code, Collections.emptyMap(),
+                    new ByteArrayInputStream((response == null ? "{}" : response).getBytes(StandardCharsets.UTF_8)));
+        }
+    };
+
+    private final OctopusCliExecutor cli = mock(OctopusCliExecutor.class);
+
+    @BeforeEach
+    public void shortenTaskPolling() {
+        RestApiExecutor.taskPollIntervalMillis = 1;
+    }
+
+    @AfterEach
+    public void restoreTaskPolling() {
+        RestApiExecutor.taskPollIntervalMillis = RestApiExecutor.TASK_POLL_INTERVAL.toMillis();
+    }
+
+    private RestApiExecutor executor() {
+        TaskListener listener = mock(TaskListener.class);
+        when(listener.getLogger()).thenReturn(mock(PrintStream.class));
+        OctopusApi api = new OctopusApi("https://octopus.example.com", "API-KEY123", transport).forSpace("Spaces-1");
+        return new RestApiExecutor(api, "Web", listener, () -> cli);
+    }
+
+    @Test
+    public void createRelease_postsTheReleaseWithoutLaunchingTheCli() throws Exception {
+        // Arrange
+        responses.put("GET /api/Spaces-1/projects", "{\"Items\":[{\"Id\":\"Projects-1\",\"Name\":\"Web\"}]}");
+        responses.put("GET /api/Spaces-1/projects/Projects-1/channels", "{\"Items\":[{\"Id\":\"Channels-1\",\"Name\":\"Default\",\"IsDefault\":true}]}");
+        responses.put("GET /api/Spaces-1/deploymentprocesses/deploymentprocess-Projects-1/template",
+                "{\"NextVersionIncrement\":\"1.0.1\",\"Packages\":[{\"StepName\":\"Deploy\",\"ActionName\":\"Deploy\",\"PackageId\":\"Web.App\"}]}");
+        responses.put("POST /api/Spaces-1/releases", "{\"Id\":\"Releases-1\",\"Version\":\"1.0.1\"}");
+
+        // Act
+        Result result = executor().createRelease(null, null, null, null,
+                Collections.singletonList("Web.App:2.0.0"), null, null,
+                null, null, null, null, false, null, false, null);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.SUCCESS);
+        assertThat(requests).last().isEqualTo("POST /api/Spaces-1/releases "
+                + "{\"ProjectId\":\"Projects-1\",\"ChannelId\":\"Channels-1\",\"Version\":\"1.0.1\","
+                + "\"SelectedPackages\":[{\"ActionName\":\"Deploy\",\"Version\":\"2.0.0\"}]}");
+        verifyNoInteractions(cli);
+    }
+
+    @Test
+    public void createRelease_withGitReference_isHandedToTheCli() throws Exception {
+        // Arrange
+        when(cli.createRelease(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(),
+                anyBoolean(), any(), anyBoolean(), any())).thenReturn(Result.SUCCESS);
+
+        // Act
+        Result result = executor().createRelease("1.0.0", null, null, null, null, "refs/heads/main", null,
+                null, null, null, null, false, null, false, null);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.SUCCESS);
+        assertThat(requests).isEmpty();
+    }
+
+    @Test
+    public void selectPackages_matchesByStepOrPackageIdAndFallsBackToTheDefaultVersion() {
+        Set<SelectedPackage> template = new LinkedHashSet<>(Arrays.asList(
+                new SelectedPackage("Deploy Web", "Web.App", null, "1.0.0"),
+                new SelectedPackage("Deploy Api", "Api.App", null, "1.0.0"),
+                new SelectedPackage("Deploy Db", "Db.App", null, "1.0.0")));
+
+        List<SelectedPackage> selected = RestApiExecutor.selectPackages(template,
+                Arrays.asList("Deploy Web:2.0.0", "Api.App:3.0.0"), "9.9.9");
+
+        assertThat(selected).extracting(SelectedPackage::getVersion).containsExactly("2.0.0", "3.0.0", "9.9.9");
+        assertThat(RestApiExecutor.selectPackages(template, Collections.emptyList(), null)).isNull();
+    }
+
+    @Test
+    public void deployRelease_waitsThroughAFailedTaskCheck() throws Exception {
+        // Arrange
+        givenARelease();
+        responses.put("POST /api/Spaces-1/deployments", "{\"Id\":\"Deployments-1\",\"TaskId\":\"ServerTasks-1\"}");
+        responses.put("GET /api/Spaces-1/tasks/ServerTasks-1",
+                "{\"Id\":\"ServerTasks-1\",\"State\":\"Success\",\"IsCompleted\":true}");
+        failOnce.add("GET /api/Spaces-1/tasks/ServerTasks-1");
+
+        // Act
+        Result result = executor().deployRelease("1.0.0", "Production", null, null, null,
+                true, null, false, null);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.SUCCESS);
+        assertThat(requests).filteredOn("GET /api/Spaces-1/tasks/ServerTasks-1"::equals).hasSize(2);
+    }
+
+    @Test
+    public void deployRelease_withAnUnknownVariable_fails() throws Exception {
+        // Arrange
+        givenARelease();
+        responses.put("GET /api/Spaces-1/releases/Releases-1/deployments/preview/Environments-1",
+                "{\"Form\":{\"Values\":{\"var-1\":\"\"},\"Elements\":[{\"Name\":\"var-1\","
+                        + "\"Control\":{\"Name\":\"Approver\",\"Description\":\"\"}}]}}");
+
+        // Act
+        Result result = executor().deployRelease("1.0.0", "Production", null, null,
+                Arrays.asList("Approver:Jane", "Aprover:Jane"), false, null, false, null);
+
+        // Assert
+        assertThat(result).isEqualTo(Result.FAILURE);
+        assertThat(requests).noneMatch(request -> request.startsWith("POST /api/Spaces-1/deployments"));
+    }
+
+    private void givenARelease() {
+        responses.put("GET /api/Spaces-1/projects", "{\"Items\":[{\"Id\":\"Projects-1\",\"Name\":\"Web\"}]}");
+        responses.put("GET /api/Spaces-1/projects/Projects-1/releases/1.0.0", "{\"Id\":\"Releases-1\",\"Version\":\"1.0.0\"}");
+        responses.put("GET /api/Spaces-1/environments", "{\"Items\":[{\"Id\":\"Environments-1\",\"Name\":\"Production\"}]}");
+    }
+}
@@ -0,0 +1,29 @@
+package hudson.plugins.octopusdeploy.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimeSpansTest {
+
+    @Test
+    public void hoursMinutesAndSecondsAreRead() {
+        assertThat(TimeSpans.parse("01:30:15")).isEqualTo(Duration.ofSeconds(5415));
+    }
+
+    @Test
+    public void daysAndFractionsAreRead() {
+        assertThat(TimeSpans.parse("1.00:00:00")).isEqualTo(Duration.ofDays(1));
+        assertThat(TimeSpans.parse("2.12:00:00.5")).isEqualTo(Duration.ofHours(60).plusMillis(500));
+    }
+
+    @Test
+    public void valuesThatAreNotTimeSpansAreInvalid() {
+        assertThat(TimeSpans.isValid("invalid")).isFalse();
+        assertThat(TimeSpans.isValid("24:00:00")).isFalse();
+        assertThat(TimeSpans.isValid("00:60:00")).isFalse();
+        assertThat(TimeSpans.isValid("10")).isFalse();
+    }
+}